@@ -0,0 +1,96 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.SpringServiceApplication;
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing a catalog with JPA {@code saveAll} against batched {@code upsertAll}, on a file based H2 database
+ * like the one the service uses. <br>
+ * Scores are in rows per second. Table is emptied (and optionally preloaded, to measure updates) before every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BulkLoadBenchmark.ROWS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BulkLoadBenchmark {
+
+    static final int ROWS = 10_000;
+
+    // true measures updates of existing rows, false inserts into an empty table
+    @Param({"false", "true"})
+    private boolean preloaded;
+
+    @Param({"100", "500", "2000"})
+    private int batchSize;
+
+    private final List<Product> products = SyntheticCatalog.generate(ROWS);
+
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:./target/benchmark-db/bulk-load",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "--product.service.bulk-load.batch-size=" + batchSize,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.kingict.spring.service=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.file.name=");
+        productRepository = context.getBean(ProductRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetTable() {
+        jdbcTemplate.execute("TRUNCATE TABLE product");
+        if (preloaded) {
+            productRepository.upsertAll(products);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Product> saveAll() {
+        return productRepository.saveAll(products);
+    }
+
+    @Benchmark
+    public int upsertAll() {
+        return productRepository.upsertAll(products);
+    }
+}
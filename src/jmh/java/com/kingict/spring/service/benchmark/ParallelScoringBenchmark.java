@@ -0,0 +1,83 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.SpringServiceApplication;
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.service.ProductService;
+import com.kingict.spring.service.service.SearchQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a broad search, which scores almost the whole catalog, with scoring pools of different parallelism. <br>
+ * Parallelism 1 is the sequential scoring, so the other results show how scoring scales with cores.
+ * Results are only meaningful up to the number of available processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelScoringBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--product.service.search.parallelism=" + parallelism,
+                        "--product.service.search.parallel-threshold=1",
+                        "--spring.cache.type=none",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.kingict.spring.service=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.file.name=");
+        ProductServiceBenchmark.seed(context.getBean(JdbcTemplate.class), SyntheticCatalog.generate(catalogSize));
+        productService = context.getBean(ProductService.class);
+        productService.refreshCatalog();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Product> searchBroad() {
+        return productService.searchProducts("premium e");
+    }
+
+    @Benchmark
+    public List<Product> searchBroadFirstPage() {
+        return productService.searchProducts(new SearchQuery("premium e", null, 20)).products();
+    }
+}
@@ -0,0 +1,73 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.PriceIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Filters products by category and price range, once with a stream over the whole catalog (what filtering did
+ * before the index) and once with the sorted price index. <br>
+ * Range covers about 5% of prices, so results grow with the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceIndexBenchmark {
+
+    private static final double LOWER_PRICE = 100.0;
+    private static final double UPPER_PRICE = 200.0;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"", "laptops"})
+    private String category;
+
+    private List<Product> products;
+    private PriceIndex index;
+
+    @Setup
+    public void setUp() {
+        products = SyntheticCatalog.generate(size);
+        index = PriceIndex.build(products);
+    }
+
+    @Benchmark
+    public List<Product> filterStream() {
+        return products.stream()
+                .filter(product -> category.isEmpty() || category.equalsIgnoreCase(product.getCategory()))
+                .filter(product -> product.getPrice() != null
+                        && product.getPrice() >= LOWER_PRICE && product.getPrice() <= UPPER_PRICE)
+                .sorted(Comparator.comparing(Product::getId))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Product> filterIndex() {
+        return index.find(category, LOWER_PRICE, UPPER_PRICE, Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    // one page of a wide range, only the page is kept in id order instead of sorting the whole range
+    @Benchmark
+    public List<Product> filterIndexFirstPage() {
+        return index.find(category, LOWER_PRICE, UPPER_PRICE, Long.MIN_VALUE, 20);
+    }
+}
@@ -0,0 +1,58 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.utils.ProductScore;
+import com.kingict.spring.service.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores a single product, once with tokenizing everything on every call (what search did before the index)
+ * and once with pre-tokenized product text (what search index does).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductScoreBenchmark {
+
+    @Param({"red", "wireless lipstick", "premium quality design"})
+    private String query;
+
+    private Product product;
+    private List<String> nameTokens;
+    private List<String> descriptionTokens;
+    private List<String> queryTokens;
+
+    @Setup
+    public void setUp() {
+        product = SyntheticCatalog.generate(1).get(0);
+        nameTokens = TextUtils.tokenize(product.getName());
+        descriptionTokens = TextUtils.tokenize(product.getDescription());
+        queryTokens = TextUtils.tokenize(query);
+    }
+
+    @Benchmark
+    public int calculateScore() {
+        return ProductScore.calculateScore(product, query);
+    }
+
+    @Benchmark
+    public int calculateScorePreTokenized() {
+        return ProductScore.calculateScore(nameTokens, descriptionTokens, queryTokens);
+    }
+}
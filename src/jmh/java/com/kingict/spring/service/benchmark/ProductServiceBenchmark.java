@@ -0,0 +1,142 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.SpringServiceApplication;
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.service.FilterQuery;
+import com.kingict.spring.service.service.FilterResult;
+import com.kingict.spring.service.service.ProductService;
+import com.kingict.spring.service.service.SearchQuery;
+import com.kingict.spring.service.service.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs search and filter through the real {@link ProductService} bean, backed by an in-memory H2 database
+ * filled with a synthetic catalog. <br>
+ * Catalog is seeded once per trial, so setup time isn't part of the measurement. <br>
+ * Query cache is off by default, so every invocation scores the catalog. With {@code -p cacheType=caffeine}
+ * repeated queries are answered from cache, the way popular queries are in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProductServiceBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"none"})
+    private String cacheType;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.cache.type=" + cacheType,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.kingict.spring.service=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.file.name=");
+        seed(context.getBean(JdbcTemplate.class), SyntheticCatalog.generate(catalogSize));
+        productService = context.getBean(ProductService.class);
+        productService.refreshCatalog();
+    }
+
+    static void seed(JdbcTemplate jdbcTemplate, List<Product> products) {
+        String sql = "INSERT INTO product (id, name, category, description, price, image_url) VALUES (?, ?, ?, ?, ?, ?)";
+        for (int from = 0; from < products.size(); from += SEED_BATCH_SIZE) {
+            List<Product> batch = products.subList(from, Math.min(from + SEED_BATCH_SIZE, products.size()));
+            jdbcTemplate.batchUpdate(sql, batch, batch.size(), (statement, product) -> {
+                statement.setLong(1, product.getId());
+                statement.setString(2, product.getName());
+                statement.setString(3, product.getCategory());
+                statement.setString(4, product.getDescription());
+                statement.setDouble(5, product.getPrice());
+                statement.setString(6, product.getImageUrl());
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // narrow query, only products named with "lipstick" and description tokens containing it
+    @Benchmark
+    public List<Product> searchNarrow() {
+        return productService.searchProducts("lipstick");
+    }
+
+    // broad query, "e" is contained in most tokens so almost whole catalog gets scored
+    @Benchmark
+    public List<Product> searchBroad() {
+        return productService.searchProducts("premium e");
+    }
+
+    // misspelled query, "lipstik" and "wirless" are corrected to the closest indexed words first
+    @Benchmark
+    public List<Product> searchFuzzy() {
+        return productService.searchProducts(new SearchQuery("wirless lipstik", null, 20, true, false)).products();
+    }
+
+    @Benchmark
+    public List<Product> searchFirstPage() {
+        return productService.searchProducts(new SearchQuery("red wireless watch", null, 20)).products();
+    }
+
+    // same search with category and price facets counted over all matches
+    @Benchmark
+    public SearchResult searchFirstPageWithFacets() throws Exception {
+        return productService.searchProductsAsync(new SearchQuery("red wireless watch", null, 20, false, true)).get();
+    }
+
+    @Benchmark
+    public List<Product> filterCategoryAndPrice() {
+        return productService.filterProducts("laptops", 100.0, 200.0);
+    }
+
+    @Benchmark
+    public List<Product> filterPriceRange() {
+        return productService.filterProducts(null, 500.0, 510.0);
+    }
+
+    @Benchmark
+    public List<Product> filterFirstPage() {
+        return productService.filterProducts(new FilterQuery("beauty", 0.0, Double.MAX_VALUE, null, 20, false)).products();
+    }
+
+    @Benchmark
+    public FilterResult filterFirstPageWithFacets() {
+        return productService.filterProducts(new FilterQuery(null, 0.0, Double.MAX_VALUE, null, 20, true));
+    }
+}
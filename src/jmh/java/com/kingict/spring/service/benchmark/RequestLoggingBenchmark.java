@@ -0,0 +1,97 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.SpringServiceApplication;
+import com.kingict.spring.service.repository.ProductRepository;
+import com.kingict.spring.service.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of logging on the hot paths, measured as latency of requests to the running server. <br>
+ * {@code sync-debug} is the old setup: DEBUG logs of the application and Spring MVC, every request logged,
+ * written to console and file on the request thread. {@code async-sampled} is the default setup: INFO logs,
+ * sampled request log and writing on a background thread. Logs are written to {@code target/benchmark-logs}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RequestLoggingBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"sync-debug", "async-sampled"})
+    private String logging;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean syncDebug = "sync-debug".equals(logging);
+        String level = syncDebug ? "DEBUG" : "INFO";
+        // command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringServiceApplication.class)
+                .run("--server.port=0",
+                        "--spring.profiles.active=" + (syncDebug ? "sync-logging" : "default"),
+                        "--spring.datasource.url=jdbc:h2:mem:logging;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--product.service.sync.enabled=false",
+                        "--logging.level.com.kingict.spring.service=" + level,
+                        "--logging.level.org.springframework.web=" + level,
+                        "--product.service.request-log.sample-every=" + (syncDebug ? 1 : 100),
+                        "--logging.file.name=target/benchmark-logs/" + logging + ".log");
+        context.getBean(ProductRepository.class).upsertAll(SyntheticCatalog.generate(CATALOG_SIZE));
+        context.getBean(ProductService.class).refreshCatalog();
+
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        context.close();
+    }
+
+    private int send(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int getProductById() throws Exception {
+        return send("/products/" + ThreadLocalRandom.current().nextInt(1, CATALOG_SIZE + 1));
+    }
+
+    // mostly answered from the query cache, so logging is a large part of the request
+    @Benchmark
+    public int filterFirstPage() throws Exception {
+        return send("/products/filter?lower=" + ThreadLocalRandom.current().nextInt(10) * 10 + "&upper=500&limit=20");
+    }
+}
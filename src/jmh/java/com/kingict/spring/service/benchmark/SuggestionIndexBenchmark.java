@@ -0,0 +1,48 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.search.SuggestionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocompletes prefixes of different length, from one character matching most of the catalog
+ * to a whole name that matches a single product.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuggestionIndexBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"l", "lip", "red wireless l"})
+    private String prefix;
+
+    private SuggestionIndex index;
+
+    @Setup
+    public void setUp() {
+        index = SuggestionIndex.build(SyntheticCatalog.generate(size), 10);
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return index.suggest(prefix, 10);
+    }
+}
@@ -0,0 +1,73 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates deterministic catalogs of any size, so benchmark runs can be compared with each other.
+ */
+public class SyntheticCatalog {
+
+    private static final String[] CATEGORIES = {
+            "beauty", "fragrances", "furniture", "groceries", "home-decoration", "kitchen-accessories", "laptops",
+            "mens-shirts", "mens-shoes", "mens-watches", "mobile-accessories", "motorcycle", "skin-care", "smartphones",
+            "sports-accessories", "sunglasses", "tablets", "tops", "vehicle", "womens-bags"
+    };
+
+    private static final String[] ADJECTIVES = {
+            "red", "blue", "green", "black", "white", "premium", "classic", "modern", "vintage", "portable",
+            "wireless", "organic", "luxury", "compact", "durable", "elegant", "lightweight", "smart", "soft", "bold"
+    };
+
+    private static final String[] NOUNS = {
+            "lipstick", "mascara", "perfume", "sofa", "chair", "table", "lamp", "knife", "pan", "laptop",
+            "shirt", "shoes", "watch", "charger", "helmet", "cream", "phone", "ball", "glasses", "bag"
+    };
+
+    private static final String[] WORDS = {
+            "quality", "finish", "formula", "design", "comfort", "style", "everyday", "use", "long-lasting", "vibrant",
+            "perfect", "gift", "home", "travel", "material", "crafted", "features", "with", "and", "for"
+    };
+
+    public static final long SEED = 42L;
+
+    /**
+     * Generates products with ids from 1 to size.
+     *
+     * @param size number of products
+     * @return list of products ordered by id
+     */
+    public static List<Product> generate(int size) {
+        Random random = new Random(SEED);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String name = pick(random, ADJECTIVES) + " " + pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + " " + i;
+            StringBuilder description = new StringBuilder("The ").append(name).append(" is");
+            int words = 8 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                description.append(' ').append(pick(random, WORDS));
+            }
+            description.append('.');
+            String category = pick(random, CATEGORIES);
+            double price = Math.round(random.nextDouble() * 200000) / 100.0;
+            products.add(new Product((long) i, capitalize(name), category, description.toString(), price,
+                    "https://cdn.example.com/products/" + i + "/thumbnail.png"));
+        }
+        return products;
+    }
+
+    public static List<String> getCategories() {
+        return List.of(CATEGORIES);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares previous regex based tokenizer with the single-pass one. <br>
+ * Allocation rate is reported by GC profiler, gc.alloc.rate.norm is bytes per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextUtilsBenchmark {
+
+    private final String text = "The Essence Mascara Lash Princess is a popular mascara known for its volumizing and lengthening effects. "
+            + "Achieve dramatic lashes with this long-lasting and cruelty-free formula.";
+
+    private final String[] tokens = new String[64];
+
+    @Benchmark
+    public List<String> regexTokenize() {
+        String cleanedText = text.replaceAll("[^a-zA-Z0-9\\s]", "").trim().toLowerCase();
+        if (cleanedText.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(cleanedText.split("\\W+"))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> singlePassTokenize() {
+        return TextUtils.tokenize(text);
+    }
+
+    @Benchmark
+    public void singlePassTokenizeIntoSink(Blackhole blackhole) {
+        TextUtils.tokenize(text, blackhole::consume);
+    }
+
+    @Benchmark
+    public int singlePassTokenizeIntoArray() {
+        return TextUtils.tokenize(text, tokens);
+    }
+}
@@ -0,0 +1,132 @@
+package com.kingict.spring.service.benchmark;
+
+import com.kingict.spring.service.SpringServiceApplication;
+import com.kingict.spring.service.repository.ProductRepository;
+import com.kingict.spring.service.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test of the running server: every invocation sends {@link #CONCURRENCY} requests at once and waits for all responses. <br>
+ * Compares Tomcat's platform thread pool with virtual threads ({@code spring.threads.virtual.enabled}).
+ * Scores are in requests per second. Pinned virtual threads are printed thanks to {@code -Djdk.tracePinnedThreads}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OperationsPerInvocation(VirtualThreadsLoadBenchmark.CONCURRENCY)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Djdk.tracePinnedThreads=short"})
+public class VirtualThreadsLoadBenchmark {
+
+    static final int CONCURRENCY = 1000;
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clients;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // command line arguments, so they take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringServiceApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--product.service.sync.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.kingict.spring.service=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.file.name=");
+        context.getBean(ProductRepository.class).upsertAll(SyntheticCatalog.generate(CATALOG_SIZE));
+        context.getBean(ProductService.class).refreshCatalog();
+
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        // clients always use virtual threads, so only the server side differs between runs
+        clients = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder().executor(clients).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        clients.close();
+        context.close();
+    }
+
+    private int sendConcurrently(List<URI> uris) throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            responses.add(clients.submit(() ->
+                    httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding()).statusCode()));
+        }
+        int ok = 0;
+        for (Future<Integer> response : responses) {
+            if (response.get() == 200) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    // blocking JDBC lookup per request
+    @Benchmark
+    public int getProductById() throws Exception {
+        List<URI> uris = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            uris.add(URI.create(baseUrl + "/products/" + ThreadLocalRandom.current().nextInt(1, CATALOG_SIZE + 1)));
+        }
+        return sendConcurrently(uris);
+    }
+
+    // blocking JDBC page read per request
+    @Benchmark
+    public int getProductsPage() throws Exception {
+        List<URI> uris = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            uris.add(URI.create(baseUrl + "/products?limit=20&after=" + ThreadLocalRandom.current().nextInt(CATALOG_SIZE)));
+        }
+        return sendConcurrently(uris);
+    }
+
+    // in-memory search, CPU bound
+    @Benchmark
+    public int searchFirstPage() throws Exception {
+        List<URI> uris = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            uris.add(URI.create(baseUrl + "/products/search?query=red+wireless+watch&limit=20"));
+        }
+        return sendConcurrently(uris);
+    }
+}
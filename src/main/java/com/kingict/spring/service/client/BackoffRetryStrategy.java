@@ -0,0 +1,54 @@
+package com.kingict.spring.service.client;
+
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Retries idempotent requests after transient errors, waiting exponentially longer before every retry. <br>
+ * Timeouts and connection failures aren't retried, so a slow or unreachable upstream costs a single attempt.
+ * {@code Retry-After} header of a response takes precedence over computed backoff.
+ */
+public class BackoffRetryStrategy extends DefaultHttpRequestRetryStrategy {
+
+    private final Duration initialBackoff;
+
+    public BackoffRetryStrategy(int maxRetries, Duration initialBackoff) {
+        super(maxRetries,
+                TimeValue.ofMilliseconds(initialBackoff.toMillis()),
+                List.of(InterruptedIOException.class, UnknownHostException.class, ConnectException.class,
+                        NoRouteToHostException.class, SSLException.class),
+                List.of(429, 502, 503, 504));
+        this.initialBackoff = initialBackoff;
+    }
+
+    @Override
+    public TimeValue getRetryInterval(HttpRequest request, IOException exception, int execCount, HttpContext context) {
+        return backoff(execCount);
+    }
+
+    @Override
+    public TimeValue getRetryInterval(HttpResponse response, int execCount, HttpContext context) {
+        if (response.containsHeader(HttpHeaders.RETRY_AFTER)) {
+            return super.getRetryInterval(response, execCount, context);
+        }
+        return backoff(execCount);
+    }
+
+    // execCount is 1 after the first attempt, so the first retry waits initial backoff
+    private TimeValue backoff(int execCount) {
+        return TimeValue.ofMilliseconds(initialBackoff.toMillis() << Math.min(execCount - 1, 16));
+    }
+}
@@ -0,0 +1,65 @@
+package com.kingict.spring.service.client;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Minimal lock-free circuit breaker. <br>
+ * After {@code failureThreshold} consecutive failures circuit opens and every call is rejected for {@code openDuration}.
+ * Then a single trial call is let through: its success closes the circuit, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // written before state changes to OPEN, so whoever sees OPEN also sees its end
+    private volatile long openUntilMillis;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Checks if a call may be made now.
+     *
+     * @return true if call is allowed, caller must then report its outcome
+     */
+    public boolean tryAcquire() {
+        return switch (state.get()) {
+            case CLOSED -> true;
+            // only one caller wins the switch to half-open and makes the trial call
+            case OPEN -> clock.millis() >= openUntilMillis && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            case HALF_OPEN -> false;
+        };
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            consecutiveFailures.set(0);
+            openUntilMillis = clock.millis() + openDuration.toMillis();
+            state.set(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+}
@@ -0,0 +1,129 @@
+package com.kingict.spring.service.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Guards upstream calls with a {@link CircuitBreaker}. I/O errors and 5xx responses count as failures. <br>
+ * Outcome of a successful response is recorded only when the response is closed, after its body was consumed,
+ * so a body that stalls or breaks off while it is being read counts as a failure too.
+ */
+public class CircuitBreakerInterceptor implements ClientHttpRequestInterceptor {
+
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException("Circuit is open, not calling " + request.getURI());
+        }
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            circuitBreaker.onFailure();
+            return response;
+        }
+        return new GuardedResponse(response);
+    }
+
+    /**
+     * Response that reports its outcome once: failure at the first I/O error while reading the body,
+     * otherwise success when it is closed.
+     */
+    private final class GuardedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private InputStream body;
+
+        private GuardedResponse(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        private void recordFailure() {
+            if (recorded.compareAndSet(false, true)) {
+                circuitBreaker.onFailure();
+            }
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream stream;
+                try {
+                    stream = response.getBody();
+                } catch (IOException e) {
+                    recordFailure();
+                    throw e;
+                }
+                body = new FilterInputStream(stream) {
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            return super.read();
+                        } catch (IOException e) {
+                            recordFailure();
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        try {
+                            return super.read(buffer, offset, length);
+                        } catch (IOException e) {
+                            recordFailure();
+                            throw e;
+                        }
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (recorded.compareAndSet(false, true)) {
+                    circuitBreaker.onSuccess();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.kingict.spring.service.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling upstream while its circuit is open. <br>
+ * It is an {@link IOException}, so {@code RestTemplate} reports it like any other I/O error.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
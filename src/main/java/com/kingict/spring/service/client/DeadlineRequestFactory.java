@@ -0,0 +1,35 @@
+package com.kingict.spring.service.client;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request factory that gives every call an overall deadline. <br>
+ * Connect and read timeouts only bound a single step, so an upstream that keeps sending a byte now and then could
+ * hold a call forever. A call still running at its deadline, retries and reading of the body included, is cancelled,
+ * which closes its connection and fails the blocked read.
+ */
+public class DeadlineRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private final Executor deadlines;
+
+    public DeadlineRequestFactory(HttpClient httpClient, Duration callTimeout) {
+        super(httpClient);
+        this.deadlines = CompletableFuture.delayedExecutor(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+        // cancelling a call that already finished does nothing, its connection is back in the pool by then
+        if (request instanceof Cancellable cancellable) {
+            deadlines.execute(cancellable::cancel);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.kingict.spring.service.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * HTTP client used for calls to the products API. <br>
+ * Connections are pooled and kept alive, every phase of a call has a timeout, transient errors are retried
+ * with backoff, a call as a whole has a deadline and a circuit breaker stops calling upstream while it keeps failing.
+ * This way a slow upstream can't hold our request threads for longer than the configured timeouts.
+ */
+@Configuration
+public class UpstreamClientConfig {
+
+    @Value("${product.service.upstream.max-connections}")
+    private int maxConnections = 20;
+
+    @Value("${product.service.upstream.keep-alive}")
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    @Value("${product.service.upstream.connect-timeout}")
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    @Value("${product.service.upstream.read-timeout}")
+    private Duration readTimeout = Duration.ofSeconds(10);
+
+    @Value("${product.service.upstream.call-timeout}")
+    private Duration callTimeout = Duration.ofSeconds(60);
+
+    @Value("${product.service.upstream.pool-timeout}")
+    private Duration poolTimeout = Duration.ofSeconds(2);
+
+    @Value("${product.service.upstream.retry.max-retries}")
+    private int maxRetries = 2;
+
+    @Value("${product.service.upstream.retry.initial-backoff}")
+    private Duration initialBackoff = Duration.ofMillis(200);
+
+    @Value("${product.service.upstream.circuit-breaker.failure-threshold}")
+    private int failureThreshold = 5;
+
+    @Value("${product.service.upstream.circuit-breaker.open-duration}")
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    @Bean
+    public PoolingHttpClientConnectionManager upstreamConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public CloseableHttpClient upstreamHttpClient(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(upstreamConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .setRetryStrategy(new BackoffRetryStrategy(maxRetries, initialBackoff))
+                .build();
+    }
+
+    @Bean
+    public CircuitBreaker upstreamCircuitBreaker() {
+        return new CircuitBreaker(failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    @Bean
+    public MeterBinder upstreamClientMetrics(PoolingHttpClientConnectionManager upstreamConnectionManager, CircuitBreaker upstreamCircuitBreaker) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(upstreamConnectionManager, "upstream").bindTo(registry);
+            // 0 closed, 1 open, 2 half-open
+            Gauge.builder("products.upstream.circuit.breaker.state", upstreamCircuitBreaker, breaker -> breaker.getState().ordinal())
+                    .description("State of the circuit breaker guarding the products API")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public RestTemplate upstreamRestTemplate(CloseableHttpClient upstreamHttpClient, CircuitBreaker upstreamCircuitBreaker) {
+        RestTemplate restTemplate = new RestTemplate(new DeadlineRequestFactory(upstreamHttpClient, callTimeout));
+        restTemplate.getInterceptors().add(new CircuitBreakerInterceptor(upstreamCircuitBreaker));
+        return restTemplate;
+    }
+}
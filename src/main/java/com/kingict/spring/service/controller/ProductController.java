@@ -1,15 +1,31 @@
 package com.kingict.spring.service.controller;
 
 import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.Facets;
+import com.kingict.spring.service.service.CatalogVersion;
+import com.kingict.spring.service.service.FilterQuery;
+import com.kingict.spring.service.service.FilterResult;
 import com.kingict.spring.service.service.ProductService;
+import com.kingict.spring.service.service.SearchQuery;
+import com.kingict.spring.service.utils.ProductFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/products")
@@ -17,6 +33,17 @@ public class ProductController {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    // no product word is anywhere near this long, longer queries only cost search time
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private static final String PARTIAL_RESULTS_HEADER = "X-Partial-Results";
+
+    private static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
+    private static final List<String> FACETS = List.of("category", "price");
+
     private final ProductService productService;
 
     public ProductController(ProductService productService) {
@@ -24,54 +51,138 @@ public class ProductController {
     }
 
     /**
-     * Retrieves all products.
+     * Retrieves all products, optionally one page at a time.
      *
-     * @return a list of all products, or a no content status if no products are found
+     * @param limit maximum number of products in the response (optional, all products if not specified)
+     * @param after id of the last product from previous page (optional)
+     * @param fields comma separated product properties to return (optional, all properties if not specified)
+     * @param request used to answer conditional requests
+     * @return a list of products ordered by id with a link to the next page if there is one,
+     * or a bad request status for invalid parameters, or a no content status if no products are found,
+     * or a not modified status if catalog didn't change since the version client has
      */
     @GetMapping
-    public ResponseEntity<List<Product>> getProducts() {
-        logger.info("Fetching all products");
-        List<Product> products = productService.getProducts();
+    public ResponseEntity<?> getProducts(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        String pageError = validatePage(limit, fields);
+        if (pageError != null) {
+            logger.warn("Invalid page parameters: {}", pageError);
+            return ResponseEntity.badRequest().body(pageError);
+        }
+        // products of an empty catalog are loaded first, so ETag of the response is the version of the loaded catalog
+        if (isNotModified(request, productService.loadCatalogVersion())) {
+            return null;
+        }
+
+        logger.debug("Fetching all products");
+        List<Product> products = productService.getProducts(after, toFetchLimit(limit));
         if (products.isEmpty()) {
-            logger.info("No products found");
+            logger.debug("No products found");
             return ResponseEntity.noContent().build();
         }
-        logger.info("Returning {} products", products.size());
-        return ResponseEntity.ok(products);
+        logger.debug("Returning {} products", products.size());
+        return toPageResponse(products, limit, fields);
     }
 
     /**
      * Retrieves a product by its ID.
      *
      * @param id the ID of the product to retrieve
-     * @return the product with the specified ID, or a not found status if the product does not exist
+     * @param request used to answer conditional requests
+     * @return the product with the specified ID, or a not found status if the product does not exist,
+     * or a not modified status if catalog didn't change since the version client has
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        logger.info("Fetching product with id {}", id);
+    public ResponseEntity<Product> getProductById(@PathVariable Long id, WebRequest request) {
+        if (isNotModified(request, productService.getCatalogVersion())) {
+            return null;
+        }
+        logger.debug("Fetching product with id {}", id);
         Product product = productService.getProductById(id);
         if (product == null) {
             logger.warn("Product with id {} not found", id);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
         }
-        logger.info("Returning product with id {}", id);
+        logger.debug("Returning product with id {}", id);
         return ResponseEntity.ok(product);
     }
 
+    /**
+     * Retrieves many products by their IDs in one request, eg. all products of a cart.
+     *
+     * @param ids comma separated IDs of products to retrieve, at most {@value #MAX_PAGE_SIZE}
+     * @param fields comma separated product properties to return (optional, all properties if not specified)
+     * @param request used to answer conditional requests
+     * @return products in the same order as their IDs, with IDs of products that don't exist in the
+     * {@code X-Missing-Ids} header, or a bad request status for invalid parameters, or a no content status if none
+     * of the products exist, or a not modified status if catalog didn't change since the version client has
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<?> getProductsByIds(
+            @RequestParam List<Long> ids,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        if (ids.isEmpty() || ids.contains(null)) {
+            logger.warn("Invalid product ids: {}", ids);
+            return ResponseEntity.badRequest().body("Ids must be a comma separated list of numbers");
+        }
+        if (ids.size() > MAX_PAGE_SIZE) {
+            logger.warn("Too many product ids: {}", ids.size());
+            return ResponseEntity.badRequest().body("At most " + MAX_PAGE_SIZE + " ids can be requested at once");
+        }
+        String pageError = validatePage(null, fields);
+        if (pageError != null) {
+            logger.warn("Invalid page parameters: {}", pageError);
+            return ResponseEntity.badRequest().body(pageError);
+        }
+        if (isNotModified(request, productService.getCatalogVersion())) {
+            return null;
+        }
+
+        logger.debug("Fetching {} products by id", ids.size());
+        List<Product> products = productService.getProductsByIds(ids);
+        Set<Long> foundIds = products.stream().map(Product::getId).collect(Collectors.toSet());
+        String missingIds = ids.stream()
+                .distinct()
+                .filter(id -> !foundIds.contains(id))
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        if (!missingIds.isEmpty()) {
+            logger.debug("Products with ids {} not found", missingIds);
+        }
+        if (products.isEmpty()) {
+            return ResponseEntity.noContent().header(MISSING_IDS_HEADER, missingIds).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missingIds.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missingIds);
+        }
+        logger.debug("Returning {} products", products.size());
+        return toPageResponse(response, products, null, fields, ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
     /**
      * Retrieves all product categories.
      *
-     * @return a list of all categories, or a no content status if no categories are found
+     * @param request used to answer conditional requests
+     * @return a list of all categories, or a no content status if no categories are found,
+     * or a not modified status if catalog didn't change since the version client has
      */
     @GetMapping("/categories")
-    public ResponseEntity<List<String>> getCategories() {
-        logger.info("Fetching all categories");
+    public ResponseEntity<List<String>> getCategories(WebRequest request) {
+        if (isNotModified(request, productService.getCatalogVersion())) {
+            return null;
+        }
+        logger.debug("Fetching all categories");
         List<String> categories = productService.getCategories();
         if (categories.isEmpty()) {
-            logger.info("No categories found");
+            logger.debug("No categories found");
             return ResponseEntity.noContent().build();
         }
-        logger.info("Returning {} categories", categories.size());
+        logger.debug("Returning {} categories", categories.size());
         return ResponseEntity.ok(categories);
     }
 
@@ -81,13 +192,22 @@ public class ProductController {
      * @param category the category to filter by (optional)
      * @param lower the lower price bound (default is 0)
      * @param upper the upper price bound (default is Double.MAX_VALUE)
-     * @return a list of products matching the criteria, or a bad request status for invalid parameters, or a no content status if no products match the criteria
+     * @param limit maximum number of products in the response (optional)
+     * @param after id of the last product from previous page (optional)
+     * @param fields comma separated product properties to return (optional)
+     * @param facets comma separated facets of all matching products to return, {@code category} and/or {@code price} (optional)
+     * @return a list of products matching the criteria (inside an object together with facets, if they were requested),
+     * or a bad request status for invalid parameters, or a no content status if no products match the criteria
      */
     @GetMapping("/filter")
     public ResponseEntity<?> filterProducts(
             @RequestParam(required = false) String category,
             @RequestParam(required = false, defaultValue = "0") Double lower,
-            @RequestParam(required = false, defaultValue = "" + Double.MAX_VALUE) Double upper) {
+            @RequestParam(required = false, defaultValue = "" + Double.MAX_VALUE) Double upper,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String facets) {
 
         // validate price range
         if (lower < 0) {
@@ -98,49 +218,262 @@ public class ProductController {
             logger.warn("Invalid price range: lower = {}, upper = {}", lower, upper);
             return ResponseEntity.badRequest().body("Upper value cannot be lower than lower value");
         }
+        String pageError = validatePage(limit, fields, facets);
+        if (pageError != null) {
+            logger.warn("Invalid page parameters: {}", pageError);
+            return ResponseEntity.badRequest().body(pageError);
+        }
 
         // validate category
         if (category != null && !category.isEmpty()) {
             category = category.toLowerCase();
-            List<String> allCategories = productService.getCategories()
-                    .stream()
-                    .map(String::toLowerCase)
-                    .toList();
-            if (!allCategories.contains(category)) {
+            if (!productService.hasCategory(category)) {
                 logger.warn("Invalid category: {}", category);
                 return ResponseEntity.badRequest().body("Invalid category: " + category);
             }
         }
 
-        logger.info("Filtering products by category = {}, lower = {}, upper = {}", category, lower, upper);
-        List<Product> filteredProducts = productService.filterProducts(category, lower, upper);
+        logger.debug("Filtering products by category = {}, lower = {}, upper = {}", category, lower, upper);
+        FilterResult result = productService.filterProducts(
+                new FilterQuery(category, lower, upper, after, toFetchLimit(limit), facets != null));
+        List<Product> filteredProducts = result.products();
         if (filteredProducts.isEmpty()) {
-            logger.info("No products found for the given criteria");
+            logger.debug("No products found for the given criteria");
             return ResponseEntity.noContent().build();
         }
-        logger.info("Returning {} filtered products", filteredProducts.size());
-        return ResponseEntity.ok(filteredProducts);
+        logger.debug("Returning {} filtered products", filteredProducts.size());
+        return toPageResponse(ResponseEntity.ok(), filteredProducts, limit, fields,
+                toFacetsBody(result.facets(), facets), ServletUriComponentsBuilder.fromCurrentRequest());
     }
 
     /**
-     * Searches products by a query string.
+     * Searches products by a query string. <br>
+     * Search runs asynchronously on a bounded pool and within a time budget. If budget runs out,
+     * best products found so far are returned and marked with {@code X-Partial-Results: true} header.
      *
      * @param query the search query
-     * @return a list of products matching the query, or a bad request status if the query is empty, or a no content status if no products match the query
+     * @param limit maximum number of products in the response (optional)
+     * @param after id of the last product from previous page (optional)
+     * @param fields comma separated product properties to return (optional)
+     * @param fuzzy whether misspelled query words should be corrected (optional, false by default)
+     * @param facets comma separated facets of all matching products to return, {@code category} and/or {@code price} (optional)
+     * @return a list of products matching the query (inside an object together with facets, if they were requested),
+     * or a bad request status if the query is empty or longer than {@value #MAX_QUERY_LENGTH} characters,
+     * or a no content status if no products match the query,
+     * or a service unavailable status if search was rejected or didn't find anything in time
      */
     @GetMapping("/search")
-    public ResponseEntity<?> searchProducts(@RequestParam String query) {
+    public CompletableFuture<ResponseEntity<?>> searchProducts(
+            @RequestParam String query,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false, defaultValue = "false") boolean fuzzy,
+            @RequestParam(required = false) String facets) {
         if (query == null || query.trim().isEmpty()) {
             logger.warn("Empty search query");
-            return ResponseEntity.badRequest().body("Query cannot be empty");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Query cannot be empty"));
         }
-        logger.info("Searching products with query: {}", query);
-        List<Product> searchResults = productService.searchProducts(query);
-        if (searchResults.isEmpty()) {
-            logger.info("No products found for query: {}", query);
+        if (query.length() > MAX_QUERY_LENGTH) {
+            logger.warn("Search query too long: {} characters", query.length());
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("Query cannot be longer than " + MAX_QUERY_LENGTH + " characters"));
+        }
+        String pageError = validatePage(limit, fields, facets);
+        if (pageError != null) {
+            logger.warn("Invalid page parameters: {}", pageError);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(pageError));
+        }
+        logger.debug("Searching products with query: {}", query);
+        // request is no longer available on the search thread, so its URI is captured here
+        UriComponentsBuilder requestUri = ServletUriComponentsBuilder.fromCurrentRequest();
+        SearchQuery search = new SearchQuery(query, after, toFetchLimit(limit), fuzzy, facets != null);
+        return productService.searchProductsAsync(search).thenApply(result -> {
+            List<Product> searchResults = result.products();
+            if (searchResults.isEmpty()) {
+                logger.debug("No products found for query: {}", query);
+                return ResponseEntity.noContent().build();
+            }
+            logger.debug("Returning {} search results", searchResults.size());
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (result.partial()) {
+                response.header(PARTIAL_RESULTS_HEADER, "true");
+            }
+            return toPageResponse(response, searchResults, limit, fields, toFacetsBody(result.facets(), facets), requestUri);
+        });
+    }
+
+    /**
+     * Suggests completions of a partially typed search query, meant to be called on every keystroke. <br>
+     * Suggestions are answered from memory, no product is scored.
+     *
+     * @param prefix text typed so far
+     * @param limit maximum number of suggestions (optional, configured maximum if not specified)
+     * @return a list of suggestions ordered from the most frequent one, or a bad request status for invalid parameters,
+     * or a no content status if nothing starts with the prefix
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit) {
+        if (prefix == null || prefix.isBlank()) {
+            logger.warn("Empty suggestion prefix");
+            return ResponseEntity.badRequest().body("Prefix cannot be empty");
+        }
+        int maxSuggestions = productService.getMaxSuggestions();
+        if (limit != null && (limit < 1 || limit > maxSuggestions)) {
+            logger.warn("Invalid suggestion limit: {}", limit);
+            return ResponseEntity.badRequest().body("Limit must be between 1 and " + maxSuggestions);
+        }
+        List<String> suggestions = productService.suggest(prefix, limit);
+        if (suggestions.isEmpty()) {
+            logger.debug("No suggestions for prefix: {}", prefix);
             return ResponseEntity.noContent().build();
         }
-        logger.info("Returning {} search results", searchResults.size());
-        return ResponseEntity.ok(searchResults);
+        return ResponseEntity.ok(suggestions);
+    }
+
+    /**
+     * Checks request's If-None-Match and If-Modified-Since headers against current catalog version,
+     * and sets ETag and Last-Modified headers of the response. <br>
+     * Version is kept in memory, so a not modified response is made without reading or serializing any product.
+     * It has to be taken after the catalog was loaded and before products of the response are read,
+     * so a catalog change in between can only make the ETag older than the response, never newer.
+     *
+     * @param version current catalog version
+     * @return true if response was set to not modified and nothing else should be written
+     */
+    private boolean isNotModified(WebRequest request, CatalogVersion version) {
+        if (request.checkNotModified(version.eTag(), version.lastModified().toEpochMilli())) {
+            logger.debug("Catalog version {} not modified", version.eTag());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Validates pagination, field selection and facet parameters.
+     *
+     * @return error message, or null if parameters are valid
+     */
+    private String validatePage(Integer limit, String fields, String facets) {
+        if (facets != null) {
+            try {
+                parseFacets(facets);
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+        return validatePage(limit, fields);
+    }
+
+    /**
+     * Validates pagination and field selection parameters.
+     *
+     * @return error message, or null if parameters are valid
+     */
+    private String validatePage(Integer limit, String fields) {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            return "Limit must be between 1 and " + MAX_PAGE_SIZE;
+        }
+        if (fields != null) {
+            try {
+                ProductFields.parse(fields);
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses comma separated list of facets.
+     *
+     * @throws IllegalArgumentException if a facet doesn't exist or no facet was requested
+     */
+    private static Set<String> parseFacets(String facets) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String facet : facets.split(",")) {
+            String trimmed = facet.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!FACETS.contains(trimmed)) {
+                throw new IllegalArgumentException("Unknown facet: " + trimmed);
+            }
+            requested.add(trimmed);
+        }
+        if (requested.isEmpty()) {
+            throw new IllegalArgumentException("Facets cannot be empty");
+        }
+        return requested;
+    }
+
+    /**
+     * Picks requested facets out of all counted ones.
+     *
+     * @return map of facet name to its counts, or null if no facets were requested
+     */
+    private static Map<String, Object> toFacetsBody(Facets facets, String requested) {
+        if (requested == null) {
+            return null;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        for (String facet : parseFacets(requested)) {
+            if (facets == null) {
+                body.put(facet, null);
+            } else {
+                body.put(facet, facet.equals("category") ? facets.categories() : facets.prices());
+            }
+        }
+        return body;
+    }
+
+    // one extra product is fetched to find out if there is a next page
+    private static Integer toFetchLimit(Integer limit) {
+        return limit == null ? null : limit + 1;
+    }
+
+    /**
+     * Makes response from one page of products. <br>
+     * If there are more products than the limit, the extra product is dropped
+     * and a link to the next page is added to the Link header.
+     */
+    private ResponseEntity<?> toPageResponse(List<Product> products, Integer limit, String fields) {
+        return toPageResponse(ResponseEntity.ok(), products, limit, fields, ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    private ResponseEntity<?> toPageResponse(ResponseEntity.BodyBuilder response, List<Product> products, Integer limit,
+                                             String fields, UriComponentsBuilder requestUri) {
+        return toPageResponse(response, products, limit, fields, null, requestUri);
+    }
+
+    /**
+     * Makes response from one page of products and facets. Products are wrapped in an object together with facets,
+     * if facets were requested, otherwise body is the plain list of products.
+     */
+    private ResponseEntity<?> toPageResponse(ResponseEntity.BodyBuilder response, List<Product> products, Integer limit,
+                                             String fields, Map<String, Object> facets, UriComponentsBuilder requestUri) {
+        if (limit != null && products.size() > limit) {
+            products = products.subList(0, limit);
+            String next = requestUri
+                    .replaceQueryParam("after", products.get(products.size() - 1).getId())
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        Object page = products;
+        if (fields != null) {
+            Set<String> selectedFields = ProductFields.parse(fields);
+            page = products.stream()
+                    .map(product -> ProductFields.project(product, selectedFields))
+                    .toList();
+        }
+        if (facets == null) {
+            return response.body(page);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("products", page);
+        body.put("facets", facets);
+        return response.body(body);
     }
 }
@@ -0,0 +1,71 @@
+package com.kingict.spring.service.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async appender that doesn't let a slow console or disk slow down requests. <br>
+ * Events are handed to attached appenders through a bounded queue on a single background thread.
+ * When the queue is full, events below {@code WARN} are dropped and counted instead of waiting for free space.
+ * Warnings and errors are never dropped, they are written straight to attached appenders on the calling thread.
+ * Dropped events are published as {@code logging.events.dropped} metric.
+ */
+public class DroppingAsyncAppender extends AsyncAppender {
+
+    // shared by all instances, appenders are created by logback before there is a meter registry to bind to
+    private static final LongAdder totalDropped = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+    // makes checking for room and queueing one step, so a queued event always fits and is never dropped uncounted
+    private final Object queueLock = new Object();
+
+    public DroppingAsyncAppender() {
+        setNeverBlock(true);
+        // queue is never below this threshold, room is checked in append instead
+        setDiscardingThreshold(0);
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // done before taking the lock, so formatting of one event doesn't hold up others
+        preprocess(event);
+        synchronized (queueLock) {
+            if (getRemainingCapacity() > 0) {
+                super.append(event);
+                return;
+            }
+        }
+        if (event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            appendDirectly(event);
+            return;
+        }
+        dropped.increment();
+        totalDropped.increment();
+    }
+
+    private void appendDirectly(ILoggingEvent event) {
+        Iterator<Appender<ILoggingEvent>> appenders = iteratorForAppenders();
+        while (appenders.hasNext()) {
+            appenders.next().doAppend(event);
+        }
+    }
+
+    /**
+     * @return number of events this appender dropped because its queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of events all appenders of this type dropped
+     */
+    public static long getTotalDroppedCount() {
+        return totalDropped.sum();
+    }
+}
@@ -0,0 +1,20 @@
+package com.kingict.spring.service.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes number of log events that were dropped because an async appender's queue was full.
+ */
+@Component
+public class LoggingMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("logging.events.dropped", DroppingAsyncAppender.class, appender -> DroppingAsyncAppender.getTotalDroppedCount())
+                .description("Log events dropped because async logging queue was full")
+                .register(registry);
+    }
+}
@@ -0,0 +1,127 @@
+package com.kingict.spring.service.logging;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes one line per finished request: method, URI, status and duration. <br>
+ * Failed (status 4xx or 5xx) and slow requests are always logged. Successful requests are sampled,
+ * only one of every {@code product.service.request-log.sample-every} requests of each endpoint is logged,
+ * so rarely called endpoints are still seen while the busy ones don't flood the log.
+ * Asynchronous requests are logged when their response is complete.
+ */
+@Component
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestLoggingFilter.class);
+
+    // requests that weren't mapped to any endpoint share one sample
+    private static final String UNMAPPED = "unmapped";
+
+    private final Map<String, AtomicLong> successCounts = new ConcurrentHashMap<>();
+
+    // 1 logs every successful request, 0 or less logs none
+    @Value("${product.service.request-log.sample-every}")
+    private int sampleEvery = 100;
+
+    @Value("${product.service.request-log.slow-threshold}")
+    private Duration slowThreshold = Duration.ofMillis(500);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request, response, start));
+            } else {
+                log(request, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, int status, long durationNanos) {
+        String endpoint = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) instanceof String pattern ? pattern : UNMAPPED;
+        if (!shouldLog(endpoint, status, durationNanos)) {
+            return;
+        }
+        String uri = request.getQueryString() == null ? request.getRequestURI() : request.getRequestURI() + "?" + request.getQueryString();
+        long millis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        if (status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR || durationNanos >= slowThreshold.toNanos()) {
+            logger.warn("{} {} {} in {} ms", request.getMethod(), uri, status, millis);
+        } else {
+            logger.info("{} {} {} in {} ms", request.getMethod(), uri, status, millis);
+        }
+    }
+
+    /**
+     * Decides if a finished request is logged.
+     *
+     * @param endpoint path pattern of the endpoint that handled the request
+     * @param status status of the response
+     * @param durationNanos time spent handling the request
+     * @return true for failed and slow requests, and for one of every {@code sampleEvery} successful requests of the endpoint
+     */
+    boolean shouldLog(String endpoint, int status, long durationNanos) {
+        if (status >= HttpServletResponse.SC_BAD_REQUEST || durationNanos >= slowThreshold.toNanos()) {
+            return true;
+        }
+        if (sampleEvery <= 0) {
+            return false;
+        }
+        // first request of every endpoint is logged
+        long count = successCounts.computeIfAbsent(endpoint, key -> new AtomicLong()).getAndIncrement();
+        return count % sampleEvery == 0;
+    }
+
+    private final class CompletionListener implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+
+        private CompletionListener(HttpServletRequest request, HttpServletResponse response, long start) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            log(request, response.getStatus(), System.nanoTime() - start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
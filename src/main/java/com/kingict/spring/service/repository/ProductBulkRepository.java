@@ -0,0 +1,20 @@
+package com.kingict.spring.service.repository;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.List;
+
+/**
+ * Bulk write operations for loading many products at once.
+ */
+public interface ProductBulkRepository {
+
+    /**
+     * Inserts new products and updates existing ones (matched by id) using batched statements. <br>
+     * Unlike {@code saveAll}, this doesn't read every product before writing it.
+     *
+     * @param products products to write
+     * @return number of written products
+     */
+    int upsertAll(List<Product> products);
+}
@@ -0,0 +1,58 @@
+package com.kingict.spring.service.repository;
+
+import com.kingict.spring.service.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link ProductBulkRepository}, used by Spring Data as a fragment of {@link ProductRepository}. <br>
+ * Products are written with H2 MERGE statements, sent to database in batches of configurable size.
+ */
+public class ProductBulkRepositoryImpl implements ProductBulkRepository {
+
+    private static final String UPSERT_SQL = "MERGE INTO product (id, name, category, description, price, image_url) KEY (id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${product.service.bulk-load.batch-size}")
+    private int batchSize = 500;
+
+    public ProductBulkRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int upsertAll(List<Product> products) {
+        // pending JPA changes have to reach database before the batch, managed entities are stale after it
+        entityManager.flush();
+        int written = 0;
+        for (int from = 0; from < products.size(); from += batchSize) {
+            List<Product> batch = products.subList(from, Math.min(from + batchSize, products.size()));
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (statement, product) -> {
+                statement.setLong(1, product.getId());
+                statement.setString(2, product.getName());
+                statement.setString(3, product.getCategory());
+                statement.setString(4, product.getDescription());
+                if (product.getPrice() == null) {
+                    statement.setNull(5, Types.DOUBLE);
+                } else {
+                    statement.setDouble(5, product.getPrice());
+                }
+                statement.setString(6, product.getImageUrl());
+            });
+            written += batch.size();
+        }
+        entityManager.clear();
+        return written;
+    }
+}
@@ -5,4 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {  }
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductBulkRepository {
+}
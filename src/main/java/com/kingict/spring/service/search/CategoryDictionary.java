@@ -0,0 +1,66 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Distinct categories of the catalog with case-insensitive lookup. <br>
+ * Categories keep the spelling and order of their first appearance in the catalog.
+ */
+public class CategoryDictionary {
+
+    private final List<String> categories;
+    private final Map<String, String> categoriesByKey;
+
+    private CategoryDictionary(List<String> categories, Map<String, String> categoriesByKey) {
+        this.categories = categories;
+        this.categoriesByKey = categoriesByKey;
+    }
+
+    /**
+     * Collects distinct categories from products.
+     *
+     * @param products products in catalog order
+     * @return dictionary of all categories that appear in products
+     */
+    public static CategoryDictionary build(List<Product> products) {
+        Set<String> categories = new LinkedHashSet<>();
+        Map<String, String> categoriesByKey = new HashMap<>();
+        for (Product product : products) {
+            String category = product.getCategory();
+            if (category != null && categories.add(category)) {
+                categoriesByKey.putIfAbsent(toKey(category), category);
+            }
+        }
+        return new CategoryDictionary(List.copyOf(categories), categoriesByKey);
+    }
+
+    /**
+     * @return key under which category is looked up, same for all spellings that differ only in case
+     */
+    static String toKey(String category) {
+        return category.toLowerCase();
+    }
+
+    /**
+     * @return unmodifiable list of distinct categories
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Checks if category exists, ignoring case.
+     *
+     * @param category category name in any case
+     * @return true if at least one product has that category
+     */
+    public boolean contains(String category) {
+        return category != null && categoriesByKey.containsKey(toKey(category));
+    }
+}
@@ -0,0 +1,55 @@
+package com.kingict.spring.service.search;
+
+/**
+ * Counts products per category and price bucket of a {@link FacetIndex} in primitive arrays. <br>
+ * Counter isn't thread safe, parallel work counts into one counter per thread and merges them at the end.
+ */
+public class FacetCounter {
+
+    private final FacetIndex index;
+    private final int[] categoryCounts;
+    private final int[] priceCounts;
+
+    FacetCounter(FacetIndex index, int categories, int priceBuckets) {
+        this.index = index;
+        this.categoryCounts = new int[categories];
+        this.priceCounts = new int[priceBuckets];
+    }
+
+    /**
+     * Counts one matching product.
+     *
+     * @param position catalog position of the product
+     */
+    public void add(int position) {
+        int category = index.categoryOrdinals[position];
+        if (category >= 0) {
+            categoryCounts[category]++;
+        }
+        int bucket = index.priceBuckets[position];
+        if (bucket >= 0) {
+            priceCounts[bucket]++;
+        }
+    }
+
+    /**
+     * Adds all counts of another counter of the same index, used to merge partial results.
+     *
+     * @param other counter whose counts will be added
+     */
+    public void addAll(FacetCounter other) {
+        for (int i = 0; i < categoryCounts.length; i++) {
+            categoryCounts[i] += other.categoryCounts[i];
+        }
+        for (int i = 0; i < priceCounts.length; i++) {
+            priceCounts[i] += other.priceCounts[i];
+        }
+    }
+
+    /**
+     * @return facets with current counts
+     */
+    public Facets toFacets() {
+        return index.toFacets(categoryCounts, priceCounts);
+    }
+}
@@ -0,0 +1,96 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet values of every product, category ordinal and price bucket, in primitive arrays by catalog position. <br>
+ * Facets are counted while a result is being found, every matching product costs two array increments
+ * in a {@link FacetCounter}. <br>
+ * Categories that differ only in case share a facet, named by the spelling of their first appearance,
+ * same as in {@link CategoryDictionary}.
+ */
+public class FacetIndex {
+
+    private final String[] categories;
+    private final double[] bucketBounds;
+    // per catalog position, -1 if product has no category or no price
+    final int[] categoryOrdinals;
+    final int[] priceBuckets;
+
+    private FacetIndex(String[] categories, double[] bucketBounds, int[] categoryOrdinals, int[] priceBuckets) {
+        this.categories = categories;
+        this.bucketBounds = bucketBounds;
+        this.categoryOrdinals = categoryOrdinals;
+        this.priceBuckets = priceBuckets;
+    }
+
+    /**
+     * Finds category and price bucket of every product.
+     *
+     * @param products products in catalog order, position in this list is used as product's id inside the index
+     * @param bucketBounds prices where a new price bucket starts, ascending, first bucket starts at 0 and last one has no end
+     * @return index over given products
+     */
+    public static FacetIndex build(List<Product> products, double[] bucketBounds) {
+        double[] bounds = bucketBounds.clone();
+        Arrays.sort(bounds);
+        Map<String, Integer> ordinals = new HashMap<>();
+        List<String> categories = new ArrayList<>();
+        int[] categoryOrdinals = new int[products.size()];
+        int[] priceBuckets = new int[products.size()];
+        for (int position = 0; position < products.size(); position++) {
+            Product product = products.get(position);
+            String category = product.getCategory();
+            categoryOrdinals[position] = category == null ? -1 : ordinals.computeIfAbsent(CategoryDictionary.toKey(category), key -> {
+                categories.add(category);
+                return categories.size() - 1;
+            });
+            priceBuckets[position] = product.getPrice() == null ? -1 : bucketOf(bounds, product.getPrice());
+        }
+
+        return new FacetIndex(categories.toArray(String[]::new), bounds, categoryOrdinals, priceBuckets);
+    }
+
+    private static int bucketOf(double[] bounds, double price) {
+        int index = Arrays.binarySearch(bounds, price);
+        // a price equal to a bound starts the next bucket
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @return new counter with all counts at zero
+     */
+    public FacetCounter newCounter() {
+        return new FacetCounter(this, categories.length, bucketBounds.length + 1);
+    }
+
+    /**
+     * Makes facets from counts of a {@link FacetCounter}.
+     *
+     * @return categories with at least one product in order of their first appearance, and all price buckets
+     */
+    Facets toFacets(int[] categoryCounts, int[] priceCounts) {
+        Map<String, Integer> categoryFacets = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < categories.length; ordinal++) {
+            if (categoryCounts[ordinal] > 0) {
+                categoryFacets.put(categories[ordinal], categoryCounts[ordinal]);
+            }
+        }
+        Facets.PriceBucket[] priceFacets = new Facets.PriceBucket[priceCounts.length];
+        for (int bucket = 0; bucket < priceCounts.length; bucket++) {
+            priceFacets[bucket] = new Facets.PriceBucket(
+                    bucket == 0 ? 0.0 : bucketBounds[bucket - 1],
+                    bucket == bucketBounds.length ? null : bucketBounds[bucket],
+                    priceCounts[bucket]);
+        }
+        return new Facets(Collections.unmodifiableMap(categoryFacets), List.of(priceFacets));
+    }
+}
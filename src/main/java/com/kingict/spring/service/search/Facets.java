@@ -0,0 +1,21 @@
+package com.kingict.spring.service.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of all products of a result, not only of the returned page.
+ *
+ * @param categories number of products per category, only categories with at least one product
+ * @param prices number of products per price bucket, all buckets in ascending order
+ */
+public record Facets(Map<String, Integer> categories, List<PriceBucket> prices) {
+
+    /**
+     * @param from lowest price of the bucket, inclusive
+     * @param to highest price of the bucket, exclusive, null for the last bucket
+     * @param count number of products with price in the bucket
+     */
+    public record PriceBucket(double from, Double to, int count) {
+    }
+}
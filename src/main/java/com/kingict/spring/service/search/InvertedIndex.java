@@ -0,0 +1,227 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.utils.ProductScore;
+import com.kingict.spring.service.utils.TextUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Inverted index over tokenized product names and descriptions. <br>
+ * Every distinct token points to a posting list of product positions (ascending), so search only has to score
+ * products that have at least one token matching the query. Tokens matching the query are found through
+ * a {@link TrigramIndex} over the vocabulary, instead of comparing the query with every token.
+ */
+public class InvertedIndex {
+
+    // shorter tokens are too ambiguous to correct, one edit turns them into many other words
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    // expiry is checked once per this many substring starts of a query token (mask of a power of two)
+    private static final int EXPIRY_CHECK_MASK = 64 - 1;
+
+    private final List<Product> products;
+    private final List<List<String>> nameTokens;
+    private final List<List<String>> descriptionTokens;
+    private final Map<String, int[]> postings;
+    private final Map<Long, Integer> positionsById;
+    private final TrigramIndex trigrams;
+    // no indexed token is longer, so longer substrings of a query token are never looked up
+    private final int maxTokenLength;
+
+    private InvertedIndex(List<Product> products, List<List<String>> nameTokens, List<List<String>> descriptionTokens,
+                          Map<String, int[]> postings, Map<Long, Integer> positionsById, TrigramIndex trigrams) {
+        this.products = products;
+        this.nameTokens = nameTokens;
+        this.descriptionTokens = descriptionTokens;
+        this.postings = postings;
+        this.positionsById = positionsById;
+        this.trigrams = trigrams;
+        this.maxTokenLength = postings.keySet().stream().mapToInt(String::length).max().orElse(0);
+    }
+
+    /**
+     * Tokenizes every product once and builds posting lists for all distinct tokens.
+     *
+     * @param products products in catalog order, position in this list is used as product's id inside the index
+     * @return index over given products
+     */
+    public static InvertedIndex build(List<Product> products) {
+        List<Product> indexedProducts = List.copyOf(products);
+        List<List<String>> nameTokens = new ArrayList<>(indexedProducts.size());
+        List<List<String>> descriptionTokens = new ArrayList<>(indexedProducts.size());
+        Map<String, List<Integer>> positionsByToken = new HashMap<>();
+        Map<String, String> canonicalTokens = new HashMap<>();
+        Map<Long, Integer> positionsById = new HashMap<>(indexedProducts.size() * 2);
+
+        for (int position = 0; position < indexedProducts.size(); position++) {
+            Product product = indexedProducts.get(position);
+            positionsById.put(product.getId(), position);
+            List<String> name = tokenize(product.getName(), canonicalTokens);
+            List<String> description = tokenize(product.getDescription(), canonicalTokens);
+            nameTokens.add(name);
+            descriptionTokens.add(description);
+            addPostings(positionsByToken, name, position);
+            addPostings(positionsByToken, description, position);
+        }
+
+        Map<String, int[]> postings = new HashMap<>(positionsByToken.size() * 2);
+        positionsByToken.forEach((token, positions) -> postings.put(token, positions.stream().mapToInt(Integer::intValue).toArray()));
+        return new InvertedIndex(indexedProducts, nameTokens, descriptionTokens, postings, positionsById,
+                TrigramIndex.build(postings.keySet()));
+    }
+
+    // equal tokens of different products share one String instance, that keeps large catalogs small in memory
+    private static List<String> tokenize(String text, Map<String, String> canonicalTokens) {
+        List<String> tokens = new ArrayList<>();
+        TextUtils.tokenize(text, token -> tokens.add(canonicalTokens.computeIfAbsent(token, key -> key)));
+        return tokens;
+    }
+
+    private static void addPostings(Map<String, List<Integer>> positionsByToken, List<String> tokens, int position) {
+        for (String token : tokens) {
+            List<Integer> positions = positionsByToken.computeIfAbsent(token, key -> new ArrayList<>());
+            // products are added in order, so a duplicate can only be the last element
+            if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                positions.add(position);
+            }
+        }
+    }
+
+    /**
+     * Finds positions of all products that share at least one bidirectional match with the query. <br>
+     * Those are exactly the products that can have a score above zero, every other product would score 0.
+     *
+     * @param queryTokens tokenized query
+     * @return positions of candidate products, iterating it gives ascending (catalog) order
+     */
+    public BitSet findCandidates(List<String> queryTokens) {
+        return findCandidates(queryTokens, () -> false);
+    }
+
+    /**
+     * Finds candidates the same way as {@link #findCandidates(List)}, but stops once the search runs out of time.
+     *
+     * @param queryTokens tokenized query
+     * @param expired checked before every query token and every few substrings of a long one, true when search ran out of time
+     * @return positions of candidate products, only some of them if search ran out of time
+     */
+    public BitSet findCandidates(List<String> queryTokens, BooleanSupplier expired) {
+        BitSet candidates = new BitSet(products.size());
+        for (String queryToken : queryTokens) {
+            if (expired.getAsBoolean()) {
+                return candidates;
+            }
+            // tokens that contain the query token, there are none if it is longer than every token
+            if (queryToken.length() <= maxTokenLength) {
+                for (String token : trigrams.findContaining(queryToken)) {
+                    addCandidates(candidates, postings.get(token));
+                }
+            }
+            // tokens contained in the query token, each of them is one of its substrings no longer than the longest token
+            for (int start = 0; start < queryToken.length(); start++) {
+                if ((start & EXPIRY_CHECK_MASK) == EXPIRY_CHECK_MASK && expired.getAsBoolean()) {
+                    return candidates;
+                }
+                int maxEnd = Math.min(queryToken.length(), start + maxTokenLength);
+                for (int end = start + 1; end <= maxEnd; end++) {
+                    addCandidates(candidates, postings.get(queryToken.substring(start, end)));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static void addCandidates(BitSet candidates, int[] positions) {
+        if (positions != null) {
+            for (int position : positions) {
+                candidates.set(position);
+            }
+        }
+    }
+
+    /**
+     * Corrects misspelled query tokens for fuzzy search. <br>
+     * A token that is contained in some indexed token is kept, every other token of at least three characters is
+     * replaced by the closest indexed tokens within one edit (up to four characters) or two edits (longer tokens).
+     * Tokens without any close indexed token are kept as they are.
+     *
+     * @param queryTokens tokenized query
+     * @return query tokens with misspelled ones replaced
+     */
+    public List<String> correct(List<String> queryTokens) {
+        return correct(queryTokens, () -> false);
+    }
+
+    /**
+     * Corrects query tokens the same way as {@link #correct(List)}, but stops once the search runs out of time.
+     *
+     * @param queryTokens tokenized query
+     * @param expired checked before every query token, true when search ran out of time
+     * @return query tokens with misspelled ones replaced, tokens left when time ran out are kept as they are
+     */
+    public List<String> correct(List<String> queryTokens, BooleanSupplier expired) {
+        List<String> corrected = new ArrayList<>(queryTokens.size());
+        for (int i = 0; i < queryTokens.size(); i++) {
+            if (expired.getAsBoolean()) {
+                corrected.addAll(queryTokens.subList(i, queryTokens.size()));
+                return corrected;
+            }
+            String queryToken = queryTokens.get(i);
+            // a token longer than every indexed token by more than two edits can't be corrected to any of them
+            if (queryToken.length() > maxTokenLength + 2) {
+                corrected.add(queryToken);
+                continue;
+            }
+            if (queryToken.length() < MIN_FUZZY_LENGTH || !trigrams.findContaining(queryToken).isEmpty()) {
+                corrected.add(queryToken);
+                continue;
+            }
+            List<String> similar = trigrams.findSimilar(queryToken, queryToken.length() <= 4 ? 1 : 2);
+            if (similar.isEmpty()) {
+                corrected.add(queryToken);
+            } else {
+                corrected.addAll(similar);
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * Scores product at given position using its pre-tokenized name and description.
+     *
+     * @param position position of the product in the index
+     * @param queryTokens tokenized query
+     * @return same score as {@link ProductScore#calculateScore(Product, String)}
+     */
+    public int score(int position, List<String> queryTokens) {
+        return ProductScore.calculateScore(nameTokens.get(position), descriptionTokens.get(position), queryTokens);
+    }
+
+    /**
+     * Finds position of a product in the index.
+     *
+     * @param id id of the product
+     * @return position of the product, or -1 if product isn't indexed
+     */
+    public int positionOf(Long id) {
+        return positionsById.getOrDefault(id, -1);
+    }
+
+    public Product getProduct(int position) {
+        return products.get(position);
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    public int getVocabularySize() {
+        return postings.size();
+    }
+}
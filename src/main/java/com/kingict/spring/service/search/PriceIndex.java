@@ -0,0 +1,239 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Products sorted by price in primitive arrays, one set for the whole catalog and one per category. <br>
+ * A price range is found with two binary searches and read as a contiguous block, so products outside of it
+ * are never looked at. Products without price are not indexed.
+ */
+public class PriceIndex {
+
+    private final SortedPrices all;
+    private final Map<String, SortedPrices> byCategory;
+
+    private PriceIndex(SortedPrices all, Map<String, SortedPrices> byCategory) {
+        this.all = all;
+        this.byCategory = byCategory;
+    }
+
+    /**
+     * Sorts products by price, for the whole catalog and for every category.
+     *
+     * @param products products in catalog order
+     * @return index over given products
+     */
+    public static PriceIndex build(List<Product> products) {
+        List<Product> priced = new ArrayList<>(products.size());
+        Map<Product, Integer> positions = new IdentityHashMap<>(products.size());
+        for (int position = 0; position < products.size(); position++) {
+            Product product = products.get(position);
+            if (product.getPrice() != null) {
+                priced.add(product);
+                positions.put(product, position);
+            }
+        }
+
+        // rank of every product by id, so results of a range can be put in id order by sorting primitives
+        priced.sort(Comparator.comparing(Product::getId));
+        Map<Product, Integer> idRanks = new IdentityHashMap<>(priced.size());
+        for (int rank = 0; rank < priced.size(); rank++) {
+            idRanks.put(priced.get(rank), rank);
+        }
+
+        priced.sort(Comparator.comparingDouble(Product::getPrice));
+        Map<String, List<Product>> pricedByCategory = new HashMap<>();
+        for (Product product : priced) {
+            if (product.getCategory() != null) {
+                pricedByCategory.computeIfAbsent(toKey(product.getCategory()), key -> new ArrayList<>()).add(product);
+            }
+        }
+        Map<String, SortedPrices> byCategory = new HashMap<>(pricedByCategory.size() * 2);
+        pricedByCategory.forEach((category, categoryProducts) -> byCategory.put(category, new SortedPrices(categoryProducts, idRanks, positions)));
+        return new PriceIndex(new SortedPrices(priced, idRanks, positions), byCategory);
+    }
+
+    private static String toKey(String category) {
+        return category.toLowerCase();
+    }
+
+    /**
+     * Finds products within price range, ordered by id.
+     *
+     * @param category if specified, only products of that category (case is ignored), otherwise all products
+     * @param lowerPrice lowest price, inclusive
+     * @param upperPrice highest price, inclusive
+     * @param afterId only products with greater id are returned
+     * @param limit maximum number of products, zero or less returns no products
+     * @return products ordered by id
+     */
+    public List<Product> find(String category, double lowerPrice, double upperPrice, long afterId, int limit) {
+        return find(category, lowerPrice, upperPrice, afterId, limit, null);
+    }
+
+    /**
+     * Finds products within price range, ordered by id, and counts facets of all of them. <br>
+     * Facets are counted in the same pass over the range, before the page is cut by cursor and limit.
+     *
+     * @param facets counter of all products within price range, null if facets aren't needed
+     * @return products ordered by id
+     * @see #find(String, double, double, long, int)
+     */
+    public List<Product> find(String category, double lowerPrice, double upperPrice, long afterId, int limit, FacetCounter facets) {
+        SortedPrices prices = category == null || category.isEmpty() ? all : byCategory.get(toKey(category));
+        if (prices == null) {
+            return List.of();
+        }
+        return prices.find(lowerPrice, upperPrice, afterId, limit, facets);
+    }
+
+    private static class SortedPrices {
+
+        private final double[] prices;
+        private final long[] ids;
+        private final int[] idRanks;
+        private final int[] positions;
+        private final Product[] products;
+
+        private SortedPrices(List<Product> productsByPrice, Map<Product, Integer> idRanks, Map<Product, Integer> positions) {
+            int size = productsByPrice.size();
+            this.prices = new double[size];
+            this.ids = new long[size];
+            this.idRanks = new int[size];
+            this.positions = new int[size];
+            this.products = productsByPrice.toArray(new Product[0]);
+            for (int i = 0; i < size; i++) {
+                Product product = products[i];
+                prices[i] = product.getPrice();
+                ids[i] = product.getId();
+                this.idRanks[i] = idRanks.get(product);
+                this.positions[i] = positions.get(product);
+            }
+        }
+
+        private List<Product> find(double lowerPrice, double upperPrice, long afterId, int limit, FacetCounter facets) {
+            int from = firstIndexAbove(lowerPrice, false);
+            int to = firstIndexAbove(upperPrice, true);
+
+            // id rank in the upper half, index in the lower half, so ordering the keys orders the range by id
+            int rangeSize = Math.max(to - from, 0);
+            if (limit <= 0) {
+                // empty page, but facets still count the whole range
+                if (facets != null) {
+                    for (int i = from; i < to; i++) {
+                        facets.add(positions[i]);
+                    }
+                }
+                return List.of();
+            }
+            if (limit >= rangeSize) {
+                // whole range is returned, nothing to gain from a heap
+                long[] keys = new long[rangeSize];
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (facets != null) {
+                        facets.add(positions[i]);
+                    }
+                    if (ids[i] > afterId) {
+                        keys[count++] = key(i);
+                    }
+                }
+                Arrays.sort(keys, 0, count);
+                return toProducts(keys, count);
+            }
+
+            // max-heap of the limit smallest keys seen so far, so a page costs O(range * log limit) instead of sorting the range
+            long[] heap = new long[limit];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (facets != null) {
+                    facets.add(positions[i]);
+                }
+                if (ids[i] <= afterId) {
+                    continue;
+                }
+                long key = key(i);
+                if (count < limit) {
+                    heap[count] = key;
+                    siftUp(heap, count++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, count);
+                }
+            }
+            Arrays.sort(heap, 0, count);
+            return toProducts(heap, count);
+        }
+
+        private long key(int index) {
+            return ((long) idRanks[index] << 32) | index;
+        }
+
+        private List<Product> toProducts(long[] sortedKeys, int count) {
+            List<Product> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(products[(int) sortedKeys[i]]);
+            }
+            return result;
+        }
+
+        private static void siftUp(long[] heap, int index) {
+            long key = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] >= key) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = key;
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            long key = heap[0];
+            int index = 0;
+            int child;
+            while ((child = 2 * index + 1) < size) {
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= key) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = key;
+        }
+
+        /**
+         * Binary search for the first price greater than (or equal to, if not inclusive) the given one.
+         *
+         * @param price price to look for
+         * @param inclusive true if equal prices are skipped as well
+         * @return index of the first such price, or length of the array if there is none
+         */
+        private int firstIndexAbove(double price, boolean inclusive) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prices[middle] < price || (inclusive && prices[middle] == price)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.utils.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix autocomplete over product names and tokens, as a compressed trie in primitive arrays. <br>
+ * Suggestions are single tokens of names and descriptions, and whole names (their tokens joined by spaces).
+ * Every suggestion has a weight, the number of products it appears in (a token in name counts twice,
+ * same as in search score). <br>
+ * Suggestions are sorted, so every trie node covers a contiguous range of them, and nodes with more than
+ * a few suggestions keep their best ones precomputed. A lookup walks at most one node per prefix character
+ * and never scores more than a few dozen suggestions.
+ */
+public class SuggestionIndex {
+
+    private static final int NAME_TOKEN_WEIGHT = 2;
+    private static final int DESCRIPTION_TOKEN_WEIGHT = 1;
+    private static final int NAME_WEIGHT = 1;
+    // nodes with at most this many suggestions are ranked on lookup instead of keeping their best ones
+    private static final int SCAN_LIMIT = 64;
+
+    private final int maxSuggestions;
+    private final String[] suggestions;
+    private final int[] weights;
+
+    // node arrays, node 0 is the root, children of a node are consecutive and ordered by their first character
+    private final int[] nodeFrom;
+    private final int[] nodeTo;
+    private final int[] nodeDepth;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[][] best;
+
+    private SuggestionIndex(int maxSuggestions, String[] suggestions, int[] weights, int[] nodeFrom, int[] nodeTo,
+                            int[] nodeDepth, int[] firstChild, int[] childCount, int[][] best) {
+        this.maxSuggestions = maxSuggestions;
+        this.suggestions = suggestions;
+        this.weights = weights;
+        this.nodeFrom = nodeFrom;
+        this.nodeTo = nodeTo;
+        this.nodeDepth = nodeDepth;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.best = best;
+    }
+
+    /**
+     * Collects weighted suggestions from products and builds the trie over them.
+     *
+     * @param products products of the catalog
+     * @param maxSuggestions maximum number of suggestions a lookup can return
+     * @return index over given products
+     */
+    public static SuggestionIndex build(List<Product> products, int maxSuggestions) {
+        Map<String, Integer> weightsBySuggestion = new HashMap<>();
+        for (Product product : products) {
+            List<String> name = TextUtils.tokenize(product.getName());
+            for (String token : new HashSet<>(name)) {
+                weightsBySuggestion.merge(token, NAME_TOKEN_WEIGHT, Integer::sum);
+            }
+            for (String token : new HashSet<>(TextUtils.tokenize(product.getDescription()))) {
+                weightsBySuggestion.merge(token, DESCRIPTION_TOKEN_WEIGHT, Integer::sum);
+            }
+            if (name.size() > 1) {
+                weightsBySuggestion.merge(String.join(" ", name), NAME_WEIGHT, Integer::sum);
+            }
+        }
+
+        String[] suggestions = weightsBySuggestion.keySet().toArray(new String[0]);
+        Arrays.sort(suggestions);
+        int[] weights = new int[suggestions.length];
+        for (int i = 0; i < suggestions.length; i++) {
+            weights[i] = weightsBySuggestion.get(suggestions[i]);
+        }
+
+        // every inner node has at least two children, so there are less than two nodes per suggestion
+        int capacity = Math.max(1, 2 * suggestions.length);
+        int[] nodeFrom = new int[capacity];
+        int[] nodeTo = new int[capacity];
+        int[] nodeDepth = new int[capacity];
+        int[] firstChild = new int[capacity];
+        int[] childCount = new int[capacity];
+        int nodes = 1;
+        nodeTo[0] = suggestions.length;
+        nodeDepth[0] = suggestions.length == 0 ? 0 : commonPrefixLength(suggestions[0], suggestions[suggestions.length - 1]);
+
+        // breadth first, so children of every node get consecutive ids
+        for (int node = 0; node < nodes; node++) {
+            int depth = nodeDepth[node];
+            int from = nodeFrom[node];
+            int to = nodeTo[node];
+            // suggestion that ends in this node sorts before all longer ones
+            if (from < to && suggestions[from].length() == depth) {
+                from++;
+            }
+            firstChild[node] = nodes;
+            while (from < to) {
+                char c = suggestions[from].charAt(depth);
+                int end = from + 1;
+                while (end < to && suggestions[end].charAt(depth) == c) {
+                    end++;
+                }
+                nodeFrom[nodes] = from;
+                nodeTo[nodes] = end;
+                nodeDepth[nodes] = commonPrefixLength(suggestions[from], suggestions[end - 1]);
+                nodes++;
+                from = end;
+            }
+            childCount[node] = nodes - firstChild[node];
+        }
+
+        SuggestionIndex index = new SuggestionIndex(maxSuggestions, suggestions, weights,
+                Arrays.copyOf(nodeFrom, nodes), Arrays.copyOf(nodeTo, nodes), Arrays.copyOf(nodeDepth, nodes),
+                Arrays.copyOf(firstChild, nodes), Arrays.copyOf(childCount, nodes), new int[nodes][]);
+        // children have greater ids than their parent, so going backwards they are always ready first
+        for (int node = nodes - 1; node >= 0; node--) {
+            if (index.nodeTo[node] - index.nodeFrom[node] > SCAN_LIMIT) {
+                index.best[node] = index.rankChildren(node);
+            }
+        }
+        return index;
+    }
+
+    private static int commonPrefixLength(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < length && first.charAt(i) == second.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private int[] rankChildren(int node) {
+        TopKCollector topK = new TopKCollector(maxSuggestions);
+        int from = nodeFrom[node];
+        if (suggestions[from].length() == nodeDepth[node]) {
+            topK.offer(weights[from], from);
+        }
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            collect(child, topK);
+        }
+        return topK.toSortedPositions();
+    }
+
+    private void collect(int node, TopKCollector topK) {
+        if (best[node] != null) {
+            for (int suggestion : best[node]) {
+                topK.offer(weights[suggestion], suggestion);
+            }
+            return;
+        }
+        for (int suggestion = nodeFrom[node]; suggestion < nodeTo[node]; suggestion++) {
+            topK.offer(weights[suggestion], suggestion);
+        }
+    }
+
+    /**
+     * Finds suggestions starting with the prefix, highest weight first and alphabetically among equal weights. <br>
+     * Prefix is tokenized the same way as product text. If it ends with whitespace, its last word is considered
+     * complete, so only names continuing with another word are suggested.
+     *
+     * @param prefix text typed so far
+     * @param limit maximum number of suggestions, at most the maximum this index was built with
+     * @return suggestions, empty if none starts with the prefix
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = toKey(prefix);
+        int node = key.isEmpty() || suggestions.length == 0 ? -1 : findNode(key);
+        if (node < 0) {
+            return List.of();
+        }
+
+        int size = Math.min(limit, maxSuggestions);
+        int[] ranked;
+        if (best[node] != null) {
+            ranked = best[node];
+        } else {
+            TopKCollector topK = new TopKCollector(size);
+            collect(node, topK);
+            ranked = topK.toSortedPositions();
+        }
+        List<String> result = new ArrayList<>(Math.min(size, ranked.length));
+        for (int i = 0; i < ranked.length && i < size; i++) {
+            result.add(suggestions[ranked[i]]);
+        }
+        return result;
+    }
+
+    private static String toKey(String prefix) {
+        List<String> tokens = TextUtils.tokenize(prefix);
+        if (tokens.isEmpty()) {
+            return "";
+        }
+        String key = String.join(" ", tokens);
+        return Character.isWhitespace(prefix.charAt(prefix.length() - 1)) ? key + " " : key;
+    }
+
+    // finds the highest node whose suggestions all start with the key, or -1 if there is none
+    private int findNode(String key) {
+        int node = 0;
+        while (true) {
+            int depth = nodeDepth[node];
+            String first = suggestions[nodeFrom[node]];
+            if (key.length() <= depth) {
+                return first.startsWith(key) ? node : -1;
+            }
+            if (!first.regionMatches(0, key, 0, depth)) {
+                return -1;
+            }
+            node = findChild(node, key.charAt(depth));
+            if (node < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int findChild(int node, char c) {
+        int depth = nodeDepth[node];
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = suggestions[nodeFrom[middle]].charAt(depth);
+            if (label < c) {
+                low = middle + 1;
+            } else if (label > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return suggestions.length;
+    }
+
+    public int getNodeCount() {
+        return nodeDepth.length;
+    }
+}
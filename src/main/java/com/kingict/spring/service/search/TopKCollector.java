@@ -0,0 +1,131 @@
+package com.kingict.spring.service.search;
+
+/**
+ * Keeps the k best ranked products out of any number of offered ones, in O(n log k) time and O(k) memory. <br>
+ * Products are ranked by higher score first and then by lower catalog position, so ties are always broken the same way.
+ * Internally it is a bounded binary min-heap over primitive arrays, where the root is the worst kept product.
+ */
+public class TopKCollector {
+
+    private final int k;
+    private final int[] scores;
+    private final int[] positions;
+    private int size;
+
+    /**
+     * @param k maximum number of products to keep
+     */
+    public TopKCollector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K cannot be less than zero");
+        }
+        this.k = k;
+        this.scores = new int[k];
+        this.positions = new int[k];
+    }
+
+    /**
+     * Checks if first product is ranked before the second one.
+     *
+     * @return true if first product has higher score, or same score and lower position
+     */
+    public static boolean ranksBefore(int score1, int position1, int score2, int position2) {
+        return score1 > score2 || (score1 == score2 && position1 < position2);
+    }
+
+    /**
+     * Offers a product, it is kept only if it is ranked among the best k so far.
+     *
+     * @param score score of the product
+     * @param position catalog position of the product
+     */
+    public void offer(int score, int position) {
+        if (size < k) {
+            scores[size] = score;
+            positions[size] = position;
+            siftUp(size++);
+        } else if (k > 0 && ranksBefore(score, position, scores[0], positions[0])) {
+            scores[0] = score;
+            positions[0] = position;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offers all products kept by another collector, used to merge partial results.
+     *
+     * @param other collector whose products will be offered
+     */
+    public void offerAll(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.positions[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return positions of kept products, best ranked first
+     */
+    public int[] toSortedPositions() {
+        int[] heapScores = scores.clone();
+        int[] heapPositions = positions.clone();
+        int remaining = size;
+        int[] sorted = new int[size];
+        // repeatedly removing the worst product fills the result from the back
+        for (int i = size - 1; i >= 0; i--) {
+            sorted[i] = heapPositions[0];
+            remaining--;
+            heapScores[0] = heapScores[remaining];
+            heapPositions[0] = heapPositions[remaining];
+            siftDown(heapScores, heapPositions, remaining, 0);
+        }
+        return sorted;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(scores[parent], positions[parent], scores[index], positions[index])) {
+                break;
+            }
+            swap(scores, positions, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        siftDown(scores, positions, size, index);
+    }
+
+    // worse ranked products go to the top of the heap
+    private static void siftDown(int[] scores, int[] positions, int size, int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && ranksBefore(scores[left], positions[left], scores[right], positions[right])) {
+                worst = right;
+            }
+            if (!ranksBefore(scores[index], positions[index], scores[worst], positions[worst])) {
+                return;
+            }
+            swap(scores, positions, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] scores, int[] positions, int i, int j) {
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        int position = positions[i];
+        positions[i] = positions[j];
+        positions[j] = position;
+    }
+}
@@ -0,0 +1,236 @@
+package com.kingict.spring.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Trigram index over a vocabulary of tokens produced by {@link com.kingict.spring.service.utils.TextUtils}. <br>
+ * Every token is padded with two boundary symbols on both sides and split into overlapping three character grams.
+ * A token can only contain a word if it has all of its trigrams, and it can only be a few edits away from a word
+ * if it shares most of them, so only tokens that pass this filter are verified.
+ */
+public class TrigramIndex {
+
+    // digits, lowercase letters and the boundary symbol
+    private static final int ALPHABET_SIZE = 37;
+    private static final int BOUNDARY = 36;
+    private static final int GRAM_LENGTH = 3;
+    // one edit changes at most this many trigrams of a word
+    private static final int TRIGRAMS_PER_EDIT = 3;
+
+    private final String[] tokens;
+    // token ids (ascending) indexed by trigram code
+    private final int[][] postings;
+
+    private TrigramIndex(String[] tokens, int[][] postings) {
+        this.tokens = tokens;
+        this.postings = postings;
+    }
+
+    /**
+     * Splits every token into trigrams and builds posting lists of token ids for all trigrams.
+     *
+     * @param vocabulary distinct tokens, only digits and lowercase letters
+     * @return index over given tokens
+     */
+    public static TrigramIndex build(Collection<String> vocabulary) {
+        String[] tokens = vocabulary.toArray(new String[0]);
+        int codes = ALPHABET_SIZE * ALPHABET_SIZE * ALPHABET_SIZE;
+
+        // first pass counts tokens per trigram, so posting lists are allocated once with exact size
+        int[] counts = new int[codes];
+        int[] lastToken = new int[codes];
+        Arrays.fill(lastToken, -1);
+        for (int id = 0; id < tokens.length; id++) {
+            for (int code : paddedTrigrams(tokens[id])) {
+                if (lastToken[code] != id) {
+                    lastToken[code] = id;
+                    counts[code]++;
+                }
+            }
+        }
+
+        int[][] postings = new int[codes][];
+        int[] sizes = new int[codes];
+        for (int id = 0; id < tokens.length; id++) {
+            for (int code : paddedTrigrams(tokens[id])) {
+                if (postings[code] == null) {
+                    postings[code] = new int[counts[code]];
+                }
+                int size = sizes[code];
+                if (size == 0 || postings[code][size - 1] != id) {
+                    postings[code][size] = id;
+                    sizes[code]++;
+                }
+            }
+        }
+        return new TrigramIndex(tokens, postings);
+    }
+
+    /**
+     * Finds all tokens that contain the word. <br>
+     * Words of at least three characters are looked up by their trigrams, shorter words have no trigram of their own
+     * and are matched against the whole vocabulary.
+     *
+     * @param word word to look for
+     * @return tokens that contain the word, including the word itself if it is in the vocabulary
+     */
+    public List<String> findContaining(String word) {
+        List<String> result = new ArrayList<>();
+        if (word.length() < GRAM_LENGTH) {
+            for (String token : tokens) {
+                if (token.contains(word)) {
+                    result.add(token);
+                }
+            }
+            return result;
+        }
+
+        int[][] lists = new int[word.length() - GRAM_LENGTH + 1][];
+        for (int i = 0; i < lists.length; i++) {
+            int[] list = postings[code(symbol(word.charAt(i)), symbol(word.charAt(i + 1)), symbol(word.charAt(i + 2)))];
+            if (list == null) {
+                return result;
+            }
+            lists[i] = list;
+        }
+        // walk the shortest posting list and look up its tokens in the others
+        Arrays.sort(lists, (first, second) -> Integer.compare(first.length, second.length));
+        for (int id : lists[0]) {
+            if (isInAll(lists, id) && tokens[id].contains(word)) {
+                result.add(tokens[id]);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isInAll(int[][] lists, int id) {
+        for (int i = 1; i < lists.length; i++) {
+            if (Arrays.binarySearch(lists[i], id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds tokens closest to the word by edit distance (insertions, deletions and substitutions).
+     *
+     * @param word word to look for, usually a misspelled one
+     * @param maxEdits maximum edit distance
+     * @return all tokens with the smallest edit distance to the word, empty if no token is within max edits
+     */
+    public List<String> findSimilar(String word, int maxEdits) {
+        int[] wordTrigrams = Arrays.stream(paddedTrigrams(word)).distinct().toArray();
+        // every edit removes at most three distinct trigrams of the word, a close token keeps all the others
+        int minShared = wordTrigrams.length - TRIGRAMS_PER_EDIT * maxEdits;
+
+        List<String> result = new ArrayList<>();
+        int best = maxEdits;
+        if (minShared <= 0) {
+            for (String token : tokens) {
+                best = collectIfClosest(word, token, best, result);
+            }
+            return result;
+        }
+
+        int[] shared = new int[tokens.length];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int code : wordTrigrams) {
+            int[] list = postings[code];
+            if (list == null) {
+                continue;
+            }
+            for (int id : list) {
+                if (shared[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            if (shared[id] >= minShared) {
+                best = collectIfClosest(word, tokens[id], best, result);
+            }
+        }
+        return result;
+    }
+
+    // adds token to result if it is at least as close as the best one so far, returns new best distance
+    private static int collectIfClosest(String word, String token, int best, List<String> result) {
+        if (Math.abs(word.length() - token.length()) > best) {
+            return best;
+        }
+        int distance = editDistance(word, token, best);
+        if (distance > best) {
+            return best;
+        }
+        if (distance < best || result.isEmpty()) {
+            result.clear();
+        }
+        result.add(token);
+        return distance;
+    }
+
+    /**
+     * Levenshtein distance, computed only as far as it can stay within the bound.
+     *
+     * @param first first word
+     * @param second second word
+     * @param bound maximum distance of interest
+     * @return edit distance, or {@code bound + 1} if it is greater than bound
+     */
+    static int editDistance(String first, String second, int bound) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int substitution = previous[j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > bound) {
+                return bound + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[second.length()], bound + 1);
+    }
+
+    private static int[] paddedTrigrams(String token) {
+        int[] trigrams = new int[token.length() + GRAM_LENGTH - 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = code(paddedSymbol(token, i - 2), paddedSymbol(token, i - 1), paddedSymbol(token, i));
+        }
+        return trigrams;
+    }
+
+    private static int paddedSymbol(String token, int index) {
+        return index < 0 || index >= token.length() ? BOUNDARY : symbol(token.charAt(index));
+    }
+
+    private static int symbol(char c) {
+        return c <= '9' ? c - '0' : c - 'a' + 10;
+    }
+
+    private static int code(int first, int second, int third) {
+        return (first * ALPHABET_SIZE + second) * ALPHABET_SIZE + third;
+    }
+
+    public int size() {
+        return tokens.length;
+    }
+}
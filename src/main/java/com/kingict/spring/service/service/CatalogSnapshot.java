@@ -0,0 +1,122 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.CategoryDictionary;
+import com.kingict.spring.service.search.FacetIndex;
+import com.kingict.spring.service.search.InvertedIndex;
+import com.kingict.spring.service.search.PriceIndex;
+import com.kingict.spring.service.search.SuggestionIndex;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable in-memory copy of the catalog: all products together with every index derived from them. <br>
+ * A snapshot and every index in it are fully built before the snapshot is published, and never changed afterwards.
+ * A catalog change builds a new snapshot with new indexes and replaces the old one as a whole, so a reader holding
+ * a snapshot always sees products, indexes and version that belong together.
+ */
+final class CatalogSnapshot {
+
+    private final List<Product> products;
+    private final Product[] productsById;
+    private final long[] ids;
+    private final InvertedIndex searchIndex;
+    private final CategoryDictionary categoryDictionary;
+    private final PriceIndex priceIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final FacetIndex facetIndex;
+    private final CatalogVersion version;
+
+    private CatalogSnapshot(List<Product> products, Product[] productsById, InvertedIndex searchIndex,
+                            CategoryDictionary categoryDictionary, PriceIndex priceIndex,
+                            SuggestionIndex suggestionIndex, FacetIndex facetIndex, CatalogVersion version) {
+        this.products = products;
+        this.productsById = productsById;
+        this.ids = Arrays.stream(productsById).mapToLong(Product::getId).toArray();
+        this.searchIndex = searchIndex;
+        this.categoryDictionary = categoryDictionary;
+        this.priceIndex = priceIndex;
+        this.suggestionIndex = suggestionIndex;
+        this.facetIndex = facetIndex;
+        this.version = version;
+    }
+
+    /**
+     * Builds all indexes over the products.
+     *
+     * @param products products of the catalog in any order, snapshot keeps them ordered by id
+     * @param previous snapshot that is being replaced, null for the first one
+     * @param maxSuggestions maximum number of autocomplete suggestions
+     * @param priceBucketBounds prices where a new price facet bucket starts
+     * @return new snapshot, version is kept from the previous snapshot if content of products didn't change
+     */
+    static CatalogSnapshot build(List<Product> products, CatalogSnapshot previous, int maxSuggestions, double[] priceBucketBounds) {
+        // catalog order is id order, so ties in search, first appearances and version don't depend on where products came from
+        Product[] productsById = products.toArray(new Product[0]);
+        Arrays.sort(productsById, Comparator.comparing(Product::getId));
+        List<Product> catalog = List.of(productsById);
+        return new CatalogSnapshot(catalog, productsById,
+                InvertedIndex.build(catalog),
+                CategoryDictionary.build(catalog),
+                PriceIndex.build(catalog),
+                SuggestionIndex.build(catalog, maxSuggestions),
+                FacetIndex.build(catalog, priceBucketBounds),
+                CatalogVersion.of(catalog, previous == null ? null : previous.version));
+    }
+
+    /**
+     * @return unmodifiable list of all products, ordered by id
+     */
+    List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Finds one page of products ordered by id.
+     *
+     * @param afterId only products with greater id are returned
+     * @param limit maximum number of products
+     * @return products ordered by id
+     */
+    List<Product> getProducts(long afterId, int limit) {
+        int from = Arrays.binarySearch(ids, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = (int) Math.min(ids.length, (long) from + limit);
+        return List.of(Arrays.copyOfRange(productsById, from, to));
+    }
+
+    /**
+     * @param id id of the product
+     * @return product with given id, or null if there is none
+     */
+    Product getProduct(Long id) {
+        int position = searchIndex.positionOf(id);
+        return position < 0 ? null : searchIndex.getProduct(position);
+    }
+
+    InvertedIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    CategoryDictionary getCategoryDictionary() {
+        return categoryDictionary;
+    }
+
+    PriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+
+    SuggestionIndex getSuggestionIndex() {
+        return suggestionIndex;
+    }
+
+    FacetIndex getFacetIndex() {
+        return facetIndex;
+    }
+
+    CatalogVersion getVersion() {
+        return version;
+    }
+}
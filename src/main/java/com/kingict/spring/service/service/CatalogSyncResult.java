@@ -0,0 +1,18 @@
+package com.kingict.spring.service.service;
+
+/**
+ * Summary of a single catalog synchronization with the products API.
+ *
+ * @param modified false if API answered that products didn't change since the last sync
+ * @param complete false if response couldn't be read till the end, so no products were deleted
+ * @param upserted number of new or changed products that were written
+ * @param deleted number of products that were deleted because they are no longer in the API
+ */
+public record CatalogSyncResult(boolean modified, boolean complete, int upserted, int deleted) {
+
+    public static final CatalogSyncResult NOT_MODIFIED = new CatalogSyncResult(false, true, 0, 0);
+
+    public boolean hasChanges() {
+        return upserted > 0 || deleted > 0;
+    }
+}
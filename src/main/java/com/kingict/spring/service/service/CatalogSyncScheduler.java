@@ -0,0 +1,25 @@
+package com.kingict.spring.service.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically synchronizes catalog with the products API, so it doesn't go stale after the first load. <br>
+ * Enabled with {@code product.service.sync.enabled}. A failed run is logged by the scheduler and retried on the next one.
+ */
+@Component
+@ConditionalOnProperty(name = "product.service.sync.enabled", havingValue = "true")
+public class CatalogSyncScheduler {
+
+    private final ProductService productService;
+
+    public CatalogSyncScheduler(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @Scheduled(initialDelayString = "${product.service.sync.interval}", fixedDelayString = "${product.service.sync.interval}")
+    public void syncCatalog() {
+        productService.syncCatalog();
+    }
+}
@@ -0,0 +1,15 @@
+package com.kingict.spring.service.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when products can't be served because the catalog couldn't be loaded from the API in time.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CatalogUnavailableException extends RuntimeException {
+
+    public CatalogUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,37 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Version of the loaded catalog, used as a validator for conditional requests.
+ *
+ * @param eTag strong entity tag, derived from content of all products, so equal catalogs have equal tags
+ * @param lastModified time when catalog with this content was first loaded, in whole seconds
+ */
+public record CatalogVersion(String eTag, Instant lastModified) {
+
+    /**
+     * Makes version of given products. <br>
+     * If content didn't change since previous version, previous version is kept as it is.
+     *
+     * @param products all products of the catalog
+     * @param previous version of previously loaded catalog, null if there is none
+     * @return version of the catalog
+     */
+    public static CatalogVersion of(List<Product> products, CatalogVersion previous) {
+        long hash = products.size();
+        for (Product product : products) {
+            hash = 31 * hash + product.hashCode();
+        }
+        String eTag = "\"" + Long.toHexString(hash) + "\"";
+        if (previous != null && previous.eTag.equals(eTag)) {
+            return previous;
+        }
+        // HTTP dates have a precision of a second
+        return new CatalogVersion(eTag, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+}
@@ -0,0 +1,18 @@
+package com.kingict.spring.service.service;
+
+/**
+ * Filter criteria of products and options of the page it returns.
+ *
+ * @param category if specified, only products of that category will pass, otherwise use all categories
+ * @param lowerPrice all products must be above or equal to this value
+ * @param upperPrice all products must be below or equal to this value
+ * @param after id of the last product from previous page, null for the first page
+ * @param limit maximum number of products, null for no limit, zero or less for a page without products
+ * @param facets true to count facets of all products that passed, not only of the returned page
+ */
+public record FilterQuery(String category, Double lowerPrice, Double upperPrice, Long after, Integer limit, boolean facets) {
+
+    public FilterQuery(String category, Double lowerPrice, Double upperPrice) {
+        this(category, lowerPrice, upperPrice, null, null, false);
+    }
+}
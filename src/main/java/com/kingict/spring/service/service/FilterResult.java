@@ -0,0 +1,15 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.Facets;
+
+import java.util.List;
+
+/**
+ * One page of filtered products.
+ *
+ * @param products products ordered by id
+ * @param facets counts of all products that passed the filter, null if they weren't requested
+ */
+public record FilterResult(List<Product> products, Facets facets) {
+}
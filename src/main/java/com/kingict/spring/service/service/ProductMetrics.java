@@ -0,0 +1,72 @@
+package com.kingict.spring.service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters of the product catalog that aren't covered by HTTP server and repository metrics. <br>
+ * Histograms of all {@code products.*} meters are configured in application properties.
+ */
+@Component
+public class ProductMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Counter searchHits;
+    private final Counter searchMisses;
+    private final DistributionSummary searchResults;
+
+    public ProductMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.searchHits = Counter.builder("products.search")
+                .description("Searches that found at least one product")
+                .tag("result", "hit")
+                .register(registry);
+        this.searchMisses = Counter.builder("products.search")
+                .description("Searches that didn't find any product")
+                .tag("result", "miss")
+                .register(registry);
+        this.searchResults = DistributionSummary.builder("products.search.results")
+                .description("Number of products returned by a search")
+                .baseUnit("products")
+                .register(registry);
+    }
+
+    /**
+     * Records a finished search. Searches answered from cache aren't scored, they are counted by cache metrics.
+     *
+     * @param sample started when search started
+     * @param results number of returned products
+     * @param partial true if search ran out of time
+     */
+    public void recordSearch(Timer.Sample sample, int results, boolean partial) {
+        (results > 0 ? searchHits : searchMisses).increment();
+        searchResults.record(results);
+        sample.stop(Timer.builder("products.search.duration")
+                .description("Time spent scoring products of a search")
+                .tag("partial", String.valueOf(partial))
+                .register(registry));
+    }
+
+    /**
+     * Records a finished call to the products API.
+     *
+     * @param sample started before the call
+     * @param operation bootstrap or sync
+     * @param outcome success, not_modified, incomplete (response couldn't be read till the end) or failure
+     */
+    public void recordUpstreamFetch(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder("products.upstream.fetch")
+                .description("Time spent fetching and storing products from the products API")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+}
@@ -0,0 +1,111 @@
+package com.kingict.spring.service.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Results of recent searches and filters, kept in caches of the application cache manager. <br>
+ * Caches are bounded by the total number of products in their results (see {@link QueryCacheConfig}), and their hits,
+ * misses and evictions are published as {@code cache.*} metrics. <br>
+ * Every key contains version of the catalog its result was computed from, so results of a replaced catalog are
+ * never returned, even if they are stored after the caches were cleared.
+ */
+@Component
+public class ProductQueryCache {
+
+    public static final String SEARCH_CACHE = "product-search";
+    public static final String FILTER_CACHE = "product-filter";
+
+    private final Cache searchCache;
+    private final Cache filterCache;
+
+    public ProductQueryCache(CacheManager cacheManager) {
+        this.searchCache = getCache(cacheManager, SEARCH_CACHE);
+        this.filterCache = getCache(cacheManager, FILTER_CACHE);
+    }
+
+    // caches that aren't configured are not used, same as with caching disabled
+    private static Cache getCache(CacheManager cacheManager, String name) {
+        Cache cache = cacheManager.getCache(name);
+        return cache != null ? cache : new NoOpCache(name);
+    }
+
+    /**
+     * @return cached search result, or null if the search isn't cached
+     */
+    SearchResult getSearch(SearchKey key) {
+        return searchCache.get(key, SearchResult.class);
+    }
+
+    /**
+     * Caches result of a complete search. Partial results shouldn't be cached.
+     *
+     * @return result with unmodifiable copy of products that was cached, callers share it
+     */
+    SearchResult putSearch(SearchKey key, SearchResult result) {
+        SearchResult cached = new SearchResult(List.copyOf(result.products()), false, result.facets());
+        searchCache.put(key, cached);
+        return cached;
+    }
+
+    /**
+     * @param loader filters products if result isn't cached
+     * @return cached or loaded filter result
+     */
+    FilterResult getFilter(FilterKey key, Supplier<FilterResult> loader) {
+        FilterResult result = filterCache.get(key, FilterResult.class);
+        if (result == null) {
+            FilterResult loaded = loader.get();
+            result = new FilterResult(List.copyOf(loaded.products()), loaded.facets());
+            filterCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Weight of a cached result, the number of products it holds, so a result of a broad query without limit
+     * takes as much of the cache as thousands of pages.
+     *
+     * @param value cached search or filter result
+     * @return weight of the result, at least 1 so empty results are bounded too
+     */
+    static int weigh(Object value) {
+        if (value instanceof SearchResult result) {
+            return result.products().size() + 1;
+        }
+        if (value instanceof FilterResult result) {
+            return result.products().size() + 1;
+        }
+        return 1;
+    }
+
+    /**
+     * Drops all cached results, called when catalog changes.
+     */
+    public void clear() {
+        searchCache.clear();
+        filterCache.clear();
+    }
+
+    /**
+     * Key of a search. Score of a product doesn't depend on order of query tokens,
+     * so queries with the same tokens share one entry.
+     *
+     * @param tokens sorted query tokens, before fuzzy correction
+     */
+    record SearchKey(CatalogVersion version, List<String> tokens, boolean fuzzy, Long after, Integer limit, boolean facets) {
+
+        static SearchKey of(CatalogVersion version, List<String> queryTokens, boolean fuzzy, Long after, Integer limit, boolean facets) {
+            return new SearchKey(version, queryTokens.stream().sorted().toList(), fuzzy, after, limit, facets);
+        }
+    }
+
+    record FilterKey(CatalogVersion version, String category, Double lowerPrice, Double upperPrice, Long after, Integer limit,
+                     boolean facets) {
+    }
+}
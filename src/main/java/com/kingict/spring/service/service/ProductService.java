@@ -1,21 +1,54 @@
 package com.kingict.spring.service.service;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kingict.spring.service.model.Product;
 import com.kingict.spring.service.repository.ProductRepository;
-import com.kingict.spring.service.utils.ProductScore;
+import com.kingict.spring.service.search.FacetCounter;
+import com.kingict.spring.service.search.FacetIndex;
+import com.kingict.spring.service.search.InvertedIndex;
+import com.kingict.spring.service.search.TopKCollector;
+import com.kingict.spring.service.utils.TextUtils;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,105 +56,499 @@ public class ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
 
+    // deadline of asynchronous search is checked once per this many scored candidates (mask of a power of two)
+    private static final int DEADLINE_CHECK_MASK = 1024 - 1;
+
+    // parallel scoring splits catalog into this many chunks per thread, so threads that finish early can steal more work
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private final ProductRepository productRepository;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final SearchExecutor searchExecutor;
+    private final ProductMetrics metrics;
+    private final ProductQueryCache queryCache;
+    // runs the first load of products from the API, so no request thread waits for it longer than bootstrap timeout
+    private final Executor bootstrapExecutor;
+
+    // built lazily from the database and replaced as a whole whenever catalog changes, readers never lock
+    private volatile CatalogSnapshot catalog;
+    // serializes catalog loads, so a snapshot of older data never replaces a newer one
+    private final ReentrantLock catalogLoadLock = new ReentrantLock();
+
+    // in-flight catalog load from the API, shared by all callers that find the database empty
+    private final AtomicReference<CompletableFuture<List<Product>>> catalogBootstrap = new AtomicReference<>();
+
+    // validators of the last synchronized feed, written only by the sync job
+    private volatile FeedValidators feedValidators = FeedValidators.NONE;
 
     @Value("${product.service.products.url}")
     private String PRODUCTS_URL;
 
+    @Value("${product.service.bootstrap.timeout}")
+    private Duration bootstrapTimeout = Duration.ofSeconds(30);
+
+    @Value("${product.service.ingest.chunk-size}")
+    private int ingestChunkSize = 500;
+
+    @Value("${product.service.search.timeout}")
+    private Duration searchTimeout = Duration.ofMillis(500);
+
+    @Value("${product.service.search.partial-results}")
+    private boolean partialSearchResults = true;
+
+    @Value("${product.service.search.parallel-threshold}")
+    private int parallelThreshold = 50_000;
+
+    @Value("${product.service.suggest.max-suggestions}")
+    private int maxSuggestions = 10;
+
+    @Value("${product.service.facets.price-buckets}")
+    private double[] priceBucketBounds = {10, 25, 50, 100, 250, 500, 1000};
+
+    // source of time for search deadlines
+    private LongSupplier nanoTime = System::nanoTime;
+
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, RestTemplate upstreamRestTemplate,
+                          SearchExecutor searchExecutor, ProductMetrics metrics, ProductQueryCache queryCache,
+                          Executor applicationTaskExecutor) {
         this.productRepository = productRepository;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = upstreamRestTemplate;
+        this.searchExecutor = searchExecutor;
+        this.metrics = metrics;
+        this.queryCache = queryCache;
+        this.bootstrapExecutor = applicationTaskExecutor;
         this.objectMapper = new ObjectMapper();
     }
 
     /**
-     * Fetches products from online URL API.
+     * Fetches products from online URL API. <br>
+     * Response is streamed, products are read one at a time and passed to the consumer in chunks,
+     * so the whole response is never held in memory.
      *
-     * @return list of products
+     * @param chunkConsumer receives products in chunks of at most {@code ingestChunkSize} products
      */
-    private List<Product> fetchProductsFromApi() {
+    private void fetchProductsFromApi(Consumer<List<Product>> chunkConsumer) {
         logger.info("Fetching products from API: {}", PRODUCTS_URL);
-        String rawJson = restTemplate.getForObject(PRODUCTS_URL, String.class);
-        List<Product> products = new ArrayList<>();
-
+        Timer.Sample sample = metrics.start();
+        String outcome = "failure";
         try {
-            JsonNode rootNode = objectMapper.readTree(rawJson);
-            JsonNode productsNode = rootNode.path("products");
-
-            if (productsNode.isArray()) {
-                for (JsonNode productNode : productsNode) {
-                    Product product = new Product();
-                    product.setId(productNode.path("id").asLong());
-                    product.setName(productNode.path("title").asText());
-                    product.setDescription(productNode.path("description").asText());
-                    product.setCategory(productNode.path("category").asText());
-                    product.setPrice(productNode.path("price").asDouble());
-                    product.setImageUrl(productNode.path("thumbnail").asText());
-                    products.add(product);
+            Boolean complete = restTemplate.execute(URI.create(PRODUCTS_URL), HttpMethod.GET, null,
+                    response -> readProducts(response.getBody(), chunkConsumer));
+            outcome = Boolean.TRUE.equals(complete) ? "success" : "incomplete";
+        } finally {
+            metrics.recordUpstreamFetch(sample, "bootstrap", outcome);
+        }
+    }
+
+    /**
+     * Reads products from {"products": [...]} JSON document. Every other field is skipped.
+     *
+     * @param body JSON document
+     * @param chunkConsumer receives products in chunks of at most {@code ingestChunkSize} products
+     * @return true if the whole document was read, false if reading stopped at an error
+     */
+    private boolean readProducts(InputStream body, Consumer<List<Product>> chunkConsumer) {
+        List<Product> chunk = new ArrayList<>(ingestChunkSize);
+        boolean complete = true;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected products object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"products".equals(fieldName) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    // only a single product is turned into a tree at a time
+                    chunk.add(toProduct(objectMapper.readTree(parser)));
+                    if (chunk.size() == ingestChunkSize) {
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(ingestChunkSize);
+                    }
                 }
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
+            // products read before the error are still kept
             logger.error("Error parsing product data", e);
+            complete = false;
         }
 
-        return products;
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+        return complete;
+    }
+
+    private static Product toProduct(JsonNode productNode) {
+        Product product = new Product();
+        product.setId(productNode.path("id").asLong());
+        product.setName(productNode.path("title").asText());
+        product.setDescription(productNode.path("description").asText());
+        product.setCategory(productNode.path("category").asText());
+        product.setPrice(productNode.path("price").asDouble());
+        product.setImageUrl(productNode.path("thumbnail").asText());
+        return product;
     }
 
     /**
-     * Fetches products from database if they exist, otherwise from URL API.
+     * Returns products of the catalog if there are any, otherwise loads them from URL API. <br>
+     * Products are read from the in-memory catalog snapshot, database is read only when catalog is first loaded.
      *
      * @return list of products
      */
     public List<Product> getProducts() {
-        logger.info("Fetching all products from the database");
-        List<Product> products = productRepository.findAll();
+        logger.debug("Fetching all products from the catalog");
+        List<Product> products = getCatalog().getProducts();
         if (products.isEmpty()) {
             logger.info("No products found in database, fetching from API");
-            products = fetchProductsFromApi();
-            productRepository.saveAll(products);
-            logger.info("Products saved to database");
+            products = bootstrapCatalog();
         }
         return products;
     }
 
     /**
-     * Makes a list of categories from all products.
+     * Loads products from API into empty database, at most once at a time. <br>
+     * First caller starts the load on the bootstrap executor, and every caller, including the first one,
+     * waits for its result at most for bootstrap timeout. A load that takes longer keeps running in the background,
+     * so a later request finds the catalog loaded.
+     *
+     * @return products that were loaded
+     * @throws CatalogUnavailableException if loading failed or didn't finish within bootstrap timeout
+     */
+    private List<Product> bootstrapCatalog() {
+        CompletableFuture<List<Product>> load = new CompletableFuture<>();
+        CompletableFuture<List<Product>> inFlight = catalogBootstrap.compareAndExchange(null, load);
+        if (inFlight == null) {
+            inFlight = load;
+            try {
+                bootstrapExecutor.execute(() -> {
+                    List<Product> products;
+                    try {
+                        products = ingestProductsFromApi();
+                    } catch (RuntimeException e) {
+                        // cleared before waiters wake up, so a retry after failure starts a new load
+                        catalogBootstrap.set(null);
+                        load.completeExceptionally(e);
+                        return;
+                    }
+                    // next empty database starts a new load
+                    catalogBootstrap.set(null);
+                    load.complete(products);
+                });
+            } catch (RejectedExecutionException e) {
+                catalogBootstrap.set(null);
+                load.completeExceptionally(e);
+            }
+        } else {
+            logger.info("Catalog is already being loaded, waiting for it");
+        }
+        return awaitBootstrap(inFlight);
+    }
+
+    private List<Product> awaitBootstrap(CompletableFuture<List<Product>> inFlight) {
+        try {
+            return inFlight.get(bootstrapTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.error("Catalog wasn't loaded within {}", bootstrapTimeout);
+            throw new CatalogUnavailableException("Catalog is still loading, try again later", e);
+        } catch (ExecutionException e) {
+            logger.error("Catalog couldn't be loaded", e.getCause());
+            throw new CatalogUnavailableException("Catalog couldn't be loaded", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogUnavailableException("Interrupted while waiting for catalog", e);
+        }
+    }
+
+    private List<Product> ingestProductsFromApi() {
+        if (productRepository.count() > 0) {
+            // another load finished between our empty read and now
+            return loadCatalog(productRepository.findAll()).getProducts();
+        }
+        List<Product> products = new ArrayList<>();
+        fetchProductsFromApi(chunk -> {
+            productRepository.upsertAll(chunk);
+            products.addAll(chunk);
+        });
+        logger.info("{} products saved to database", products.size());
+        return loadCatalog(products).getProducts();
+    }
+
+    /**
+     * Synchronizes database with products from URL API. <br>
+     * Request is conditional, using ETag and Last-Modified of the previous successful sync, so an unchanged feed
+     * costs a single 304 response. Otherwise, fetched products are compared with stored ones and only new or changed
+     * products are written, products missing from the feed are deleted. <br>
+     * Products are deleted only when the whole feed was read, a broken response never removes anything.
+     *
+     * @return summary of changes that were made
+     */
+    public CatalogSyncResult syncCatalog() {
+        FeedValidators validators = feedValidators;
+        logger.info("Synchronizing products with API: {}", PRODUCTS_URL);
+        Timer.Sample sample = metrics.start();
+        String outcome = "failure";
+        CatalogSyncResult result;
+        try {
+            result = restTemplate.execute(URI.create(PRODUCTS_URL), HttpMethod.GET,
+                    request -> validators.addTo(request.getHeaders()),
+                    this::applyCatalogChanges);
+            if (result == null) {
+                result = CatalogSyncResult.NOT_MODIFIED;
+            }
+            outcome = !result.modified() ? "not_modified" : result.complete() ? "success" : "incomplete";
+        } finally {
+            metrics.recordUpstreamFetch(sample, "sync", outcome);
+        }
+        if (result.hasChanges()) {
+            refreshCatalog();
+        }
+        logger.info("Catalog synchronized: {}", result);
+        return result;
+    }
+
+    private CatalogSyncResult applyCatalogChanges(ClientHttpResponse response) throws IOException {
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return CatalogSyncResult.NOT_MODIFIED;
+        }
+
+        // every stored product left in this map after reading the feed was removed from it
+        Map<Long, Product> removed = productRepository.findAll().stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity(), (first, second) -> first, HashMap::new));
+        int[] upserted = {0};
+        boolean complete = readProducts(response.getBody(), chunk -> {
+            List<Product> changed = new ArrayList<>();
+            for (Product product : chunk) {
+                if (!product.equals(removed.remove(product.getId()))) {
+                    changed.add(product);
+                }
+            }
+            if (!changed.isEmpty()) {
+                productRepository.upsertAll(changed);
+                upserted[0] += changed.size();
+            }
+        });
+
+        if (!complete) {
+            // validators aren't kept either, so the next sync reads the whole feed again
+            logger.warn("Products feed wasn't read completely, skipping deletion of missing products");
+            return new CatalogSyncResult(true, false, upserted[0], 0);
+        }
+        if (!removed.isEmpty()) {
+            productRepository.deleteAllByIdInBatch(removed.keySet());
+        }
+        HttpHeaders headers = response.getHeaders();
+        feedValidators = new FeedValidators(headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED));
+        return new CatalogSyncResult(true, true, upserted[0], removed.size());
+    }
+
+    /**
+     * Validators of the last fully synchronized feed, sent back as conditional request headers.
+     */
+    private record FeedValidators(String eTag, String lastModified) {
+        static final FeedValidators NONE = new FeedValidators(null, null);
+
+        void addTo(HttpHeaders headers) {
+            if (eTag != null) {
+                headers.setIfNoneMatch(eTag);
+            }
+            if (lastModified != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+    }
+
+    /**
+     * Returns one page of products ordered by id, using keyset pagination on the catalog snapshot. <br>
+     * If both parameters are null, works the same as {@link #getProducts()}.
+     *
+     * @param after id of the last product from previous page, null for the first page
+     * @param limit maximum number of products, null for no limit
+     * @return list of products with id greater than {@code after}
+     */
+    public List<Product> getProducts(Long after, Integer limit) {
+        if (after == null && limit == null) {
+            return getProducts();
+        }
+        logger.debug("Fetching products from the catalog after id = {}, limit = {}", after, limit);
+        List<Product> products = getCatalog().getProducts(toAfterId(after), limit == null ? Integer.MAX_VALUE : limit);
+        if (products.isEmpty() && after == null) {
+            // catalog might still be empty, first page loads products the same way as the full list does
+            return getProducts().stream()
+                    .sorted(Comparator.comparing(Product::getId))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+        return products;
+    }
+
+    private static Long toAfterId(Long after) {
+        return after == null ? Long.MIN_VALUE : after;
+    }
+
+    /**
+     * Reloads all products from database and rebuilds catalog snapshot from them. <br>
+     * Should be called whenever products in database were changed outside of this service.
+     * Readers keep using the previous snapshot until the new one is complete.
+     */
+    public void refreshCatalog() {
+        catalogLoadLock.lock();
+        try {
+            publishCatalog(productRepository.findAll());
+        } finally {
+            catalogLoadLock.unlock();
+        }
+    }
+
+    private CatalogSnapshot loadCatalog(List<Product> products) {
+        catalogLoadLock.lock();
+        try {
+            return publishCatalog(products);
+        } finally {
+            catalogLoadLock.unlock();
+        }
+    }
+
+    // builds new snapshot off to the side and swaps it in with a single write, called only with load lock held
+    private CatalogSnapshot publishCatalog(List<Product> products) {
+        CatalogSnapshot previous = catalog;
+        CatalogSnapshot snapshot = CatalogSnapshot.build(products, previous, maxSuggestions, priceBucketBounds);
+        catalog = snapshot;
+        if (previous != null && previous.getVersion() != snapshot.getVersion()) {
+            // cached results of the old catalog can't be returned anymore, this only frees their memory
+            queryCache.clear();
+        }
+        InvertedIndex index = snapshot.getSearchIndex();
+        logger.info("Catalog loaded with {} products, {} categories and {} distinct tokens",
+                index.size(), snapshot.getCategoryDictionary().getCategories().size(), index.getVocabularySize());
+        return snapshot;
+    }
+
+    private CatalogSnapshot getCatalog() {
+        CatalogSnapshot snapshot = catalog;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        catalogLoadLock.lock();
+        try {
+            // another caller might have loaded it while we waited for the lock
+            snapshot = catalog;
+            return snapshot != null ? snapshot : publishCatalog(productRepository.findAll());
+        } finally {
+            catalogLoadLock.unlock();
+        }
+    }
+
+    /**
+     * Returns version of the catalog, which changes whenever content of any product changes. <br>
+     * Version is kept in memory, so this doesn't touch the database once catalog is loaded.
+     * If products are being loaded from URL API right now, waits for that load first (at most bootstrap timeout),
+     * so the version belongs to the products a response is then read from, not to the empty catalog.
      *
-     * @return list of categories
+     * @return current catalog version
+     */
+    public CatalogVersion getCatalogVersion() {
+        CompletableFuture<List<Product>> inFlight = catalogBootstrap.get();
+        if (inFlight != null) {
+            try {
+                awaitBootstrap(inFlight);
+            } catch (CatalogUnavailableException e) {
+                // catalog stays as it is, responses are read from it and the caller that started the load reports the error
+            }
+        }
+        return getCatalog().getVersion();
+    }
+
+    /**
+     * Returns version of the catalog the same way as {@link #getCatalogVersion()}, but if the catalog is empty,
+     * first loads products from URL API the same way as {@link #getProducts()} does.
+     *
+     * @return catalog version after loading
+     * @throws CatalogUnavailableException if catalog was empty and loading failed or didn't finish within bootstrap timeout
+     */
+    public CatalogVersion loadCatalogVersion() {
+        CatalogSnapshot snapshot = getCatalog();
+        if (snapshot.getProducts().isEmpty()) {
+            logger.info("No products found in database, fetching from API");
+            bootstrapCatalog();
+            snapshot = getCatalog();
+        }
+        return snapshot.getVersion();
+    }
+
+    /**
+     * Returns distinct categories of all products, in order of their first appearance. <br>
+     * List is maintained in memory and rebuilt only when catalog changes.
+     *
+     * @return unmodifiable list of categories
      */
     public List<String> getCategories() {
-        logger.info("Fetching all categories from the database");
-        // gather all categories and then remove duplicates
-        return productRepository.findAll().stream()
-                .map(Product::getCategory)
-                .distinct()
-                .collect(Collectors.toList());
+        logger.debug("Fetching all categories");
+        return getCatalog().getCategoryDictionary().getCategories();
+    }
+
+    /**
+     * Suggests completions of a partially typed search query. <br>
+     * Suggestions are product words and names, most frequent first, kept in memory and rebuilt only when catalog changes.
+     *
+     * @param prefix text typed so far
+     * @param limit maximum number of suggestions, null for the configured maximum
+     * @return suggestions starting with the prefix
+     */
+    public List<String> suggest(String prefix, Integer limit) {
+        return getCatalog().getSuggestionIndex().suggest(prefix, limit == null ? maxSuggestions : limit);
+    }
+
+    public int getMaxSuggestions() {
+        return maxSuggestions;
+    }
+
+    /**
+     * Checks if any product has given category.
+     *
+     * @param category category name, case is ignored
+     * @return true if category exists
+     */
+    public boolean hasCategory(String category) {
+        return getCatalog().getCategoryDictionary().contains(category);
     }
 
     /**
-     * Finds a product in repository by its id.
+     * Finds a product in the catalog by its id.
      *
      * @param id id that will be used to find a specific product
      * @return product specified by id if it exists, otherwise null
      */
     public Product getProductById(Long id) {
-        logger.info("Fetching product with id {}", id);
-        return productRepository.findById(id).orElse(null);
+        logger.debug("Fetching product with id {}", id);
+        return getCatalog().getProduct(id);
     }
 
-    private Predicate<Product> createCategoryPredicate(String category) {
-        return product -> category == null || category.isEmpty() || product.getCategory().equalsIgnoreCase(category);
-    }
-
-    private Predicate<Product> createPricePredicate(Double lowerPrice, Double upperPrice) {
-        return product -> product.getPrice() >= lowerPrice && product.getPrice() <= upperPrice;
+    /**
+     * Finds many products in the catalog by their ids at once. All of them are read from the same catalog version.
+     *
+     * @param ids ids of products, a repeated id is looked up only once
+     * @return products in order of their ids, ids of products that don't exist are skipped
+     */
+    public List<Product> getProductsByIds(List<Long> ids) {
+        logger.debug("Fetching {} products by id", ids.size());
+        CatalogSnapshot snapshot = getCatalog();
+        return ids.stream()
+                .distinct()
+                .map(snapshot::getProduct)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     /**
-     * Filters all products by three criteria.
+     * Filters all products by three criteria. <br>
+     * Filtering is done by the in-memory price index, so only products within price range are read.
      *
      * @param category if specified, only products of that category will pass, otherwise use all categories
      * @param lowerPrice all products must be above or equal to this value
@@ -129,33 +556,273 @@ public class ProductService {
      * @return products that pass all three criteria
      */
     public List<Product> filterProducts(String category, Double lowerPrice, Double upperPrice) {
-        logger.info("Filtering products by category = {}, lower price = {}, upper price = {}", category, lowerPrice, upperPrice);
-        return productRepository.findAll().stream()
-                .filter(createCategoryPredicate(category))
-                .filter(createPricePredicate(lowerPrice, upperPrice))
-                .collect(Collectors.toList());
+        return filterProducts(new FilterQuery(category, lowerPrice, upperPrice)).products();
+    }
+
+    /**
+     * Filters all products by three criteria and returns one page of results ordered by id. <br>
+     * Optionally counts all products that passed the filter by category and price bucket,
+     * in the same pass over the price index that finds the page. <br>
+     * Results are cached until catalog changes.
+     *
+     * @param filter criteria and page of the filter
+     * @return products that pass all three criteria, with facets if they were requested
+     */
+    public FilterResult filterProducts(FilterQuery filter) {
+        logger.debug("Filtering products by {}", filter);
+        CatalogSnapshot snapshot = getCatalog();
+        ProductQueryCache.FilterKey key = new ProductQueryCache.FilterKey(snapshot.getVersion(), filter.category(),
+                filter.lowerPrice(), filter.upperPrice(), filter.after(), filter.limit(), filter.facets());
+        return queryCache.getFilter(key, () -> {
+            FacetCounter counter = filter.facets() ? snapshot.getFacetIndex().newCounter() : null;
+            List<Product> products = snapshot.getPriceIndex().find(filter.category(), filter.lowerPrice(), filter.upperPrice(),
+                    toAfterId(filter.after()), filter.limit() == null ? Integer.MAX_VALUE : filter.limit(), counter);
+            return new FilterResult(products, counter == null ? null : counter.toFacets());
+        });
     }
 
     /**
      * Searches all products and matches the query to their name and description. <br>
      * Result is ordered list so first product is the one that matched the most with the query. <br>
      * Last product is one that matched the least (but still matched) with the query. <br>
-     * Products that didn't match at all (had score 0) won't be included.
+     * Products that didn't match at all (had score 0) won't be included. <br>
+     * Only products that share a matching token with the query are scored, others are skipped using search index.
      *
      * @param query user search that will be matched to products
      * @return ordered list of products
      */
     public List<Product> searchProducts(String query) {
-        logger.info("Searching products with query: {}", query);
-        return productRepository.findAll().stream()
-                .map(product -> new ScoredProduct(product, ProductScore.calculateScore(product, query)))
-                .filter(scoredProduct -> scoredProduct.score > 0)
-                .sorted(Comparator.comparingInt(ScoredProduct::score).reversed())
-                .map(ScoredProduct::product)
+        return searchProducts(new SearchQuery(query, null, null)).products();
+    }
+
+    /**
+     * Searches all products and returns one page of ordered results. <br>
+     * Products are ordered by score and then by their position in catalog, so order is always the same.
+     * Cursor is the last product of previous page, next page contains only products ranked after it. <br>
+     * With a limit, only the best {@code limit} products are kept while scoring, so matches are never fully sorted. <br>
+     * With fuzzy search, query words that don't match any indexed word are first replaced by the closest indexed
+     * words, so misspelled queries still find products. <br>
+     * Facets are counted while scoring, every product with score above zero is counted, not only the returned page. <br>
+     * Complete results are cached until catalog changes, queries with the same words in any order share one result.
+     *
+     * @param search query and page of the search
+     * @return ordered search result
+     */
+    public SearchResult searchProducts(SearchQuery search) {
+        logger.debug("Searching products with {}", search);
+        CatalogSnapshot snapshot = getCatalog();
+        ProductQueryCache.SearchKey key = searchKey(snapshot, search);
+        SearchResult cached = queryCache.getSearch(key);
+        return cached != null ? cached : search(snapshot, key, false, 0L);
+    }
+
+    /**
+     * Searches products the same way as {@link #searchProducts(SearchQuery)}, but on search executor
+     * and within {@code product.service.search.timeout} from now. <br>
+     * Deadline includes time spent waiting in the queue. If it passes while scoring, best products among those
+     * scored so far are returned as partial result (or search fails, if partial results are disabled). <br>
+     * Cached results are returned right away, without going through the search executor.
+     *
+     * @param search query and page of the search
+     * @return future of ordered search result, failed with {@link SearchUnavailableException} if search was rejected
+     * or ran out of time without any result
+     */
+    public CompletableFuture<SearchResult> searchProductsAsync(SearchQuery search) {
+        logger.debug("Searching products asynchronously with {}", search);
+        String query = search.query();
+        long deadline = nanoTime.getAsLong() + searchTimeout.toNanos();
+        CatalogSnapshot snapshot = getCatalog();
+        ProductQueryCache.SearchKey key = searchKey(snapshot, search);
+        SearchResult cached = queryCache.getSearch(key);
+        if (cached != null) {
+            logger.debug("Search for query: {} answered from cache", query);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return searchExecutor.submit(() -> {
+            SearchResult result = search(snapshot, key, true, deadline);
+            if (!result.partial()) {
+                return result;
+            }
+            if (!partialSearchResults || result.products().isEmpty()) {
+                searchExecutor.recordTimeout();
+                logger.warn("Search for query: {} didn't finish within {}", query, searchTimeout);
+                throw new SearchUnavailableException("Search didn't finish in time, try again later");
+            }
+            searchExecutor.recordPartial();
+            logger.warn("Search for query: {} didn't finish within {}, returning partial result", query, searchTimeout);
+            return result;
+        });
+    }
+
+    private static ProductQueryCache.SearchKey searchKey(CatalogSnapshot snapshot, SearchQuery search) {
+        return ProductQueryCache.SearchKey.of(snapshot.getVersion(), TextUtils.tokenize(search.query()), search.fuzzy(),
+                search.after(), search.limit(), search.facets());
+    }
+
+    private SearchResult search(CatalogSnapshot snapshot, ProductQueryCache.SearchKey key, boolean hasDeadline, long deadline) {
+        Timer.Sample sample = metrics.start();
+        SearchResult result = scoreProducts(snapshot.getSearchIndex(), key.facets() ? snapshot.getFacetIndex() : null,
+                key, hasDeadline, deadline);
+        metrics.recordSearch(sample, result.products().size(), result.partial());
+        if (!result.partial()) {
+            result = queryCache.putSearch(key, result);
+        }
+        return result;
+    }
+
+    private SearchResult scoreProducts(InvertedIndex index, FacetIndex facetIndex, ProductQueryCache.SearchKey key,
+                                       boolean hasDeadline, long deadline) {
+        // long queries take a while before scoring starts, so deadline is checked while preparing them too
+        BooleanSupplier expired = () -> hasDeadline && nanoTime.getAsLong() - deadline >= 0;
+        List<String> queryTokens = key.fuzzy() ? index.correct(key.tokens(), expired) : key.tokens();
+        Long after = key.after();
+        Integer limit = key.limit();
+
+        ScoredProduct cursor = after == null ? null : scoreProduct(index, after, queryTokens);
+        if (after != null && cursor == null) {
+            logger.debug("Search cursor {} is not in catalog", after);
+            return new SearchResult(List.of(), false);
+        }
+
+        BitSet candidates = index.findCandidates(queryTokens, expired);
+        if (expired.getAsBoolean()) {
+            // nothing was scored yet, there is no partial result to return
+            return new SearchResult(List.of(), true);
+        }
+        int candidateCount = candidates.cardinality();
+        // bounded heap keeps only the requested page instead of sorting all matches
+        int k = limit == null ? candidateCount : Math.min(limit, candidateCount);
+        Scoring scoring = new Scoring(index, facetIndex, queryTokens, candidates, cursor, k, hasDeadline, deadline, nanoTime);
+        ScoredRange scored;
+        int parallelism = searchExecutor.getParallelism();
+        if (parallelThreshold > 0 && candidateCount >= parallelThreshold && parallelism > 1) {
+            int chunkSize = Math.max(index.size() / (parallelism * CHUNKS_PER_THREAD), 1);
+            scored = searchExecutor.invoke(new ScoringTask(scoring, 0, index.size(), chunkSize));
+        } else {
+            scored = scoring.score(0, index.size());
+        }
+        List<Product> products = Arrays.stream(scored.topK().toSortedPositions())
+                .mapToObj(index::getProduct)
                 .collect(Collectors.toList());
+        return new SearchResult(products, scoring.timedOut, scored.facets() == null ? null : scored.facets().toFacets());
+    }
+
+    /**
+     * Best k products of a range of catalog positions, and facets of all its matching products.
+     *
+     * @param facets null if facets weren't requested
+     */
+    private record ScoredRange(TopKCollector topK, FacetCounter facets) {
+
+        private ScoredRange merge(ScoredRange other) {
+            topK.offerAll(other.topK);
+            if (facets != null) {
+                facets.addAll(other.facets);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Scores candidates of one search, either in one go or split into ranges of catalog positions. <br>
+     * Every range keeps its own top k and facet counts, so ranges share nothing but the flag that deadline has passed.
+     */
+    private static final class Scoring {
+
+        private final InvertedIndex index;
+        private final FacetIndex facetIndex;
+        private final List<String> queryTokens;
+        private final BitSet candidates;
+        private final ScoredProduct cursor;
+        private final int k;
+        private final boolean hasDeadline;
+        private final long deadline;
+        private final LongSupplier nanoTime;
+        private volatile boolean timedOut;
+
+        private Scoring(InvertedIndex index, FacetIndex facetIndex, List<String> queryTokens, BitSet candidates,
+                        ScoredProduct cursor, int k, boolean hasDeadline, long deadline, LongSupplier nanoTime) {
+            this.index = index;
+            this.facetIndex = facetIndex;
+            this.queryTokens = queryTokens;
+            this.candidates = candidates;
+            this.cursor = cursor;
+            this.k = k;
+            this.hasDeadline = hasDeadline;
+            this.deadline = deadline;
+            this.nanoTime = nanoTime;
+        }
+
+        /**
+         * Scores candidates with catalog position in the range.
+         *
+         * @param from first position, inclusive
+         * @param to last position, exclusive
+         * @return best k products of the range and facets of all its matching products
+         */
+        private ScoredRange score(int from, int to) {
+            TopKCollector topK = new TopKCollector(k);
+            FacetCounter facets = facetIndex == null ? null : facetIndex.newCounter();
+            int scanned = 0;
+            for (int position = candidates.nextSetBit(from); position >= 0 && position < to; position = candidates.nextSetBit(position + 1)) {
+                // clock is read only every few candidates, it costs more than scoring a product
+                if (hasDeadline && (scanned++ & DEADLINE_CHECK_MASK) == 0 && (timedOut || nanoTime.getAsLong() - deadline >= 0)) {
+                    timedOut = true;
+                    break;
+                }
+                int score = index.score(position, queryTokens);
+                if (score > 0 && facets != null) {
+                    facets.add(position);
+                }
+                if (score > 0 && (cursor == null || TopKCollector.ranksBefore(cursor.score, cursor.position, score, position))) {
+                    topK.offer(score, position);
+                }
+            }
+            return new ScoredRange(topK, facets);
+        }
+    }
+
+    /**
+     * Splits a range of catalog positions in halves until it is small enough to be scored by one thread,
+     * then merges top k and facets of both halves. Ranking is a total order, so merged result doesn't depend on
+     * which half finished first.
+     */
+    private static final class ScoringTask extends RecursiveTask<ScoredRange> {
+
+        private final Scoring scoring;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private ScoringTask(Scoring scoring, int from, int to, int chunkSize) {
+            this.scoring = scoring;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected ScoredRange compute() {
+            if (to - from <= chunkSize) {
+                return scoring.score(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScoringTask left = new ScoringTask(scoring, from, middle, chunkSize);
+            ScoringTask right = new ScoringTask(scoring, middle, to, chunkSize);
+            right.fork();
+            return left.compute().merge(right.join());
+        }
+    }
+
+    private static ScoredProduct scoreProduct(InvertedIndex index, Long id, List<String> queryTokens) {
+        int position = index.positionOf(id);
+        if (position < 0) {
+            return null;
+        }
+        return new ScoredProduct(index.getProduct(position), index.score(position, queryTokens), position);
     }
 
-    private record ScoredProduct(Product product, int score) {
+    private record ScoredProduct(Product product, int score, int position) {
         public ScoredProduct {
             if (score < 0) {
                 throw new IllegalArgumentException("Score cannot be less than zero");
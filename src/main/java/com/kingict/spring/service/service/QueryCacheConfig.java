@@ -0,0 +1,35 @@
+package com.kingict.spring.service.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Caffeine caches of search and filter results. <br>
+ * Caches are bounded by the number of products held in cached results, not by the number of results,
+ * so a few results of broad queries without a limit can't fill the heap with references to the whole catalog.
+ */
+@Configuration
+public class QueryCacheConfig {
+
+    @Value("${product.service.query-cache.max-products}")
+    private long maxProducts = 100_000;
+
+    @Value("${product.service.query-cache.ttl}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Used by Spring Boot for every cache of the cache manager, hits, misses and evictions are published as metrics.
+     */
+    @Bean
+    public Caffeine<Object, Object> queryCacheBuilder() {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxProducts)
+                .weigher((key, value) -> ProductQueryCache.weigh(value))
+                .expireAfterWrite(ttl)
+                .recordStats();
+    }
+}
@@ -0,0 +1,146 @@
+package com.kingict.spring.service.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded thread pool that runs searches off the request threads. <br>
+ * Searches are CPU bound, so pool has a fixed number of threads and a queue of fixed capacity.
+ * When the queue is full, search is rejected right away instead of waiting. <br>
+ * Scoring of large candidate sets is split across a separate fork-join pool of bounded parallelism,
+ * so it never competes with other work on the common pool. <br>
+ * Keeps counters of rejected, timed out and partial searches, published as {@code products.search.executor.*} meters.
+ */
+@Component
+public class SearchExecutor implements DisposableBean, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final ForkJoinPool scoringPool;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder partial = new LongAdder();
+
+    /**
+     * @param threads number of search threads, 0 for one thread per available processor
+     * @param queueCapacity maximum number of searches waiting for a thread
+     * @param parallelism number of threads scoring one search in parallel, 0 for one thread per available processor
+     */
+    public SearchExecutor(@Value("${product.service.search.threads}") int threads,
+                          @Value("${product.service.search.queue-capacity}") int queueCapacity,
+                          @Value("${product.service.search.parallelism}") int parallelism) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("search-"));
+        this.scoringPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("search-scoring-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false);
+    }
+
+    /**
+     * Runs search on the pool.
+     *
+     * @param search search to run
+     * @return future of search result, failed with {@link SearchUnavailableException} if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> search) {
+        try {
+            return CompletableFuture.supplyAsync(search, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Search rejected, {} searches are already waiting", executor.getQueue().size());
+            return CompletableFuture.failedFuture(new SearchUnavailableException("Too many searches in progress, try again later", e));
+        }
+    }
+
+    /**
+     * Runs a scoring task on the fork-join pool and waits for its result.
+     *
+     * @param task task that splits scoring into subtasks
+     * @return result of the task
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return scoringPool.invoke(task);
+    }
+
+    public int getParallelism() {
+        return scoringPool.getParallelism();
+    }
+
+    public void recordTimeout() {
+        timedOut.increment();
+    }
+
+    public void recordPartial() {
+        partial.increment();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    public long getPartialCount() {
+        return partial.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("products.search.executor.queued", this, SearchExecutor::getQueueDepth)
+                .description("Searches waiting for a thread")
+                .register(registry);
+        Gauge.builder("products.search.executor.active", this, SearchExecutor::getActiveCount)
+                .description("Searches being scored")
+                .register(registry);
+        FunctionCounter.builder("products.search.executor.rejected", this, SearchExecutor::getRejectedCount)
+                .description("Searches rejected because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("products.search.executor.timed.out", this, SearchExecutor::getTimedOutCount)
+                .description("Searches that ran out of time without a result")
+                .register(registry);
+        FunctionCounter.builder("products.search.executor.partial", this, SearchExecutor::getPartialCount)
+                .description("Searches that ran out of time and returned partial result")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        scoringPool.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.kingict.spring.service.service;
+
+/**
+ * Search of products and options of the page it returns.
+ *
+ * @param query user search that will be matched to products
+ * @param after id of the last product from previous page, null for the first page
+ * @param limit maximum number of products, null for no limit
+ * @param fuzzy true to correct misspelled query words
+ * @param facets true to count facets of all matching products
+ */
+public record SearchQuery(String query, Long after, Integer limit, boolean fuzzy, boolean facets) {
+
+    public SearchQuery(String query, Long after, Integer limit) {
+        this(query, after, limit, false, false);
+    }
+}
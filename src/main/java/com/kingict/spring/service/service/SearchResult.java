@@ -0,0 +1,20 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.Facets;
+
+import java.util.List;
+
+/**
+ * Ordered search results.
+ *
+ * @param products products ordered by score
+ * @param partial true if search ran out of time, so only a part of the catalog was scored
+ * @param facets counts of all matching products, null if they weren't requested
+ */
+public record SearchResult(List<Product> products, boolean partial, Facets facets) {
+
+    public SearchResult(List<Product> products, boolean partial) {
+        this(products, partial, null);
+    }
+}
@@ -0,0 +1,19 @@
+package com.kingict.spring.service.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a search is rejected because search executor is full, or when it couldn't produce any results before its deadline.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SearchUnavailableException extends RuntimeException {
+
+    public SearchUnavailableException(String message) {
+        super(message);
+    }
+
+    public SearchUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
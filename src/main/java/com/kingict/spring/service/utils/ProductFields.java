@@ -0,0 +1,72 @@
+package com.kingict.spring.service.utils;
+
+import com.kingict.spring.service.model.Product;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProductFields {
+
+    /**
+     * All product properties that can be requested, in the same order as they are serialized.
+     */
+    public static final List<String> ALL_FIELDS = List.of("id", "name", "category", "description", "price", "imageUrl");
+
+    /**
+     * Parses comma separated list of product properties.
+     *
+     * @param fields comma separated property names, eg. "id,name,price"
+     * @return requested properties in serialization order
+     * @throws IllegalArgumentException if a property doesn't exist or no property was requested
+     */
+    public static Set<String> parse(String fields) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String trimmed = field.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!ALL_FIELDS.contains(trimmed)) {
+                throw new IllegalArgumentException("Unknown field: " + trimmed);
+            }
+            requested.add(trimmed);
+        }
+        if (requested.isEmpty()) {
+            throw new IllegalArgumentException("Fields cannot be empty");
+        }
+
+        Set<String> ordered = new LinkedHashSet<>();
+        for (String field : ALL_FIELDS) {
+            if (requested.contains(field)) {
+                ordered.add(field);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Copies only requested properties of a product into a map, so only they get serialized.
+     *
+     * @param product product to copy from
+     * @param fields properties to copy, as returned by {@link #parse(String)}
+     * @return map of property name to value
+     */
+    public static Map<String, Object> project(Product product, Set<String> fields) {
+        Map<String, Object> projection = new LinkedHashMap<>();
+        for (String field : fields) {
+            projection.put(field, switch (field) {
+                case "id" -> product.getId();
+                case "name" -> product.getName();
+                case "category" -> product.getCategory();
+                case "description" -> product.getDescription();
+                case "price" -> product.getPrice();
+                case "imageUrl" -> product.getImageUrl();
+                default -> throw new IllegalArgumentException("Unknown field: " + field);
+            });
+        }
+        return projection;
+    }
+}
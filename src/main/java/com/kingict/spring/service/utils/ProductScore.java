@@ -19,12 +19,36 @@ public class ProductScore {
         List<String> productNameTokens = TextUtils.tokenize(product.getName());
         List<String> productDescriptionTokens = TextUtils.tokenize(product.getDescription());
 
+        return calculateScore(productNameTokens, productDescriptionTokens, queryTokens);
+    }
+
+    /**
+     * Calculates similarity score from already tokenized product name, description and query. <br>
+     * Used by the search index so product text doesn't have to be tokenized again on every search.
+     *
+     * @param productNameTokens tokenized product name
+     * @param productDescriptionTokens tokenized product description
+     * @param queryTokens tokenized users query
+     * @return similarity score
+     */
+    public static int calculateScore(List<String> productNameTokens, List<String> productDescriptionTokens, List<String> queryTokens) {
         int nameMatches = calculateBidirectionalMatches(productNameTokens, queryTokens);
         int descriptionMatches = calculateBidirectionalMatches(productDescriptionTokens, queryTokens);
 
         return nameMatches * 2 + descriptionMatches;
     }
 
+    /**
+     * Checks if two tokens match in at least one direction, meaning one of them is a subset of the other.
+     *
+     * @param token1 first token
+     * @param token2 second token
+     * @return true if token1 contains token2 or token2 contains token1
+     */
+    public static boolean isMatch(String token1, String token2) {
+        return token1.contains(token2) || token2.contains(token1);
+    }
+
     /**
      * Calculates bidirectional matching for two queries. <br>
      * It checks if token1 is subset of token2 and if it is true we count that. <br>
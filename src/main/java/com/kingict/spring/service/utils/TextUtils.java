@@ -1,10 +1,18 @@
 package com.kingict.spring.service.utils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class TextUtils {
+
+    private static final Pattern NON_ALPHANUMERIC_PATTERN = Pattern.compile("[^a-zA-Z0-9\\s]");
+    // buffers longer than this are not kept, so one huge text doesn't pin its buffer to the thread
+    private static final int MAX_KEPT_BUFFER_LENGTH = 1024;
+    private static final ThreadLocal<char[]> TOKEN_BUFFER = ThreadLocal.withInitial(() -> new char[64]);
+
     /**
      * Tokenizes input text into a list of lowercase words that only include alphanumeric characters.
      *
@@ -12,16 +20,96 @@ public class TextUtils {
      * @return a list of lowercase words that represent tokens from the input text
      */
     public static List<String> tokenize(String text) {
-        String cleanedText = removeNonAlphanumericCharacters(text).trim().toLowerCase();
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Tokenizes input text in a single pass and passes every token to the sink, no intermediate strings are created. <br>
+     * Produces the same tokens as removing all non-alphanumeric characters (except whitespace), lowercasing the text
+     * and splitting it by whitespace. That means characters like apostrophes join the word ("don't" becomes "dont"),
+     * while only whitespace separates tokens.
+     *
+     * @param text input text that will be tokenized, null is treated as empty text
+     * @param sink consumer that receives tokens in order of appearance
+     * @return number of tokens passed to the sink
+     */
+    public static int tokenize(CharSequence text, Consumer<String> sink) {
+        if (text == null) {
+            return 0;
+        }
+
+        int length = text.length();
+        int count = 0;
+        // only taken if some token has to be rewritten (uppercase letters or removed characters),
+        // grows to the longest rewritten token and is reused by later calls on the same thread
+        char[] buffer = null;
+        int bufferLength = 0;
+        int tokenStart = -1;
+        boolean rewritten = false;
 
-        // special case, without this function will return [""], but with this it returns []
-        // makes more sense that it is this way
-        if (cleanedText.isEmpty()) {
-            return List.of();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (isAlphanumeric(c)) {
+                char lower = toLowerCase(c);
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                    bufferLength = 0;
+                    rewritten = false;
+                }
+                if (!rewritten && (lower != c || i - tokenStart != bufferLength)) {
+                    // switch from slicing input to copying into buffer
+                    if (buffer == null) {
+                        buffer = TOKEN_BUFFER.get();
+                    }
+                    buffer = ensureCapacity(buffer, bufferLength);
+                    for (int j = 0; j < bufferLength; j++) {
+                        buffer[j] = text.charAt(tokenStart + j);
+                    }
+                    rewritten = true;
+                }
+                if (rewritten) {
+                    buffer = ensureCapacity(buffer, bufferLength + 1);
+                    buffer[bufferLength] = lower;
+                }
+                bufferLength++;
+            } else if (isWhitespace(c) && tokenStart >= 0) {
+                sink.accept(rewritten
+                        ? new String(buffer, 0, bufferLength)
+                        : text.subSequence(tokenStart, tokenStart + bufferLength).toString());
+                count++;
+                tokenStart = -1;
+            }
+            // every other character is removed, so it doesn't end current token
         }
 
-        return Arrays.stream(cleanedText.split("\\W+"))
-                .collect(Collectors.toList());
+        if (buffer != null && buffer.length <= MAX_KEPT_BUFFER_LENGTH) {
+            TOKEN_BUFFER.set(buffer);
+        }
+        return count;
+    }
+
+    private static char[] ensureCapacity(char[] buffer, int capacity) {
+        return buffer.length >= capacity ? buffer : Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+
+    /**
+     * Tokenizes input text into a caller supplied array. <br>
+     * If there are more tokens than array can hold, only the first tokens are stored,
+     * but the returned count still includes all tokens so caller can retry with a bigger array.
+     *
+     * @param text input text that will be tokenized
+     * @param tokens array that will be filled with tokens from the start
+     * @return number of tokens in the text
+     */
+    public static int tokenize(CharSequence text, String[] tokens) {
+        int[] index = {0};
+        return tokenize(text, token -> {
+            if (index[0] < tokens.length) {
+                tokens[index[0]++] = token;
+            }
+        });
     }
 
     /**
@@ -31,7 +119,20 @@ public class TextUtils {
      * @return clean text with only alphanumeric characters
      */
     public static String removeNonAlphanumericCharacters(String text) {
-        return text.replaceAll("[^a-zA-Z0-9\\s]", "");
+        return NON_ALPHANUMERIC_PATTERN.matcher(text).replaceAll("");
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    // same characters as \s in Java regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
     }
 
 }
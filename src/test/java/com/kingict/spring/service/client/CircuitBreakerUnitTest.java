@@ -0,0 +1,92 @@
+package com.kingict.spring.service.client;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CircuitBreakerUnitTest {
+
+    @Mock
+    private Clock clock;
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        // clock is read only when circuit opens
+        Mockito.lenient().when(clock.millis()).thenReturn(0L);
+        circuitBreaker = new CircuitBreaker(3, Duration.ofSeconds(10), clock);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            Assertions.assertThat(circuitBreaker.tryAcquire()).isTrue();
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Test
+    void should_open_after_consecutive_failures() {
+        fail(2);
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(1);
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Assertions.assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void should_reset_failures_after_success() {
+        fail(2);
+        circuitBreaker.onSuccess();
+        fail(2);
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void should_let_single_trial_call_through_after_open_duration() {
+        fail(3);
+        when(clock.millis()).thenReturn(10_000L);
+
+        Assertions.assertThat(circuitBreaker.tryAcquire()).isTrue();
+        Assertions.assertThat(circuitBreaker.tryAcquire()).isFalse();
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void should_close_after_successful_trial_call() {
+        fail(3);
+        when(clock.millis()).thenReturn(10_000L);
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onSuccess();
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        Assertions.assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void should_open_again_after_failed_trial_call() {
+        fail(3);
+        when(clock.millis()).thenReturn(10_000L);
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onFailure();
+
+        Assertions.assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        when(clock.millis()).thenReturn(19_999L);
+        Assertions.assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+}
@@ -0,0 +1,151 @@
+package com.kingict.spring.service.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the upstream client built by {@link UpstreamClientConfig} against a local stub server.
+ */
+public class UpstreamClientIntegrationTest {
+
+    private HttpServer upstream;
+    private String url;
+    private RestTemplate restTemplate;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failingRequests;
+    private volatile int failureStatus = 503;
+    private volatile int delayMillis;
+    private volatile int byteDelayMillis;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/products", exchange -> {
+            int request = requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"products\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(request <= failingRequests ? failureStatus : 200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                for (byte b : body) {
+                    output.write(b);
+                    output.flush();
+                    Thread.sleep(byteDelayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        upstream.start();
+        url = "http://localhost:" + upstream.getAddress().getPort() + "/products";
+
+        UpstreamClientConfig config = new UpstreamClientConfig();
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofMillis(300));
+        ReflectionTestUtils.setField(config, "callTimeout", Duration.ofMillis(600));
+        ReflectionTestUtils.setField(config, "initialBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(config, "failureThreshold", 2);
+        restTemplate = config.upstreamRestTemplate(config.upstreamHttpClient(config.upstreamConnectionManager()), config.upstreamCircuitBreaker());
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void should_retry_transient_errors() {
+        failingRequests = 2;
+
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+
+        Assertions.assertThat(response.getStatusCode().value()).isEqualTo(200);
+        Assertions.assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void should_give_up_after_max_retries() {
+        failingRequests = Integer.MAX_VALUE;
+
+        Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                .isInstanceOf(HttpServerErrorException.class);
+        Assertions.assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void should_time_out_slow_upstream_without_retrying() {
+        delayMillis = 2000;
+
+        long start = System.nanoTime();
+        Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                .isInstanceOf(ResourceAccessException.class);
+
+        Assertions.assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+        Assertions.assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void should_stop_calling_failing_upstream() {
+        failingRequests = Integer.MAX_VALUE;
+        failureStatus = 500;
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                    .isInstanceOf(HttpServerErrorException.class);
+        }
+
+        Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                .isInstanceOf(ResourceAccessException.class)
+                .hasCauseInstanceOf(CircuitOpenException.class);
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void should_cancel_call_at_deadline_while_reading_slow_body() {
+        byteDelayMillis = 100;
+
+        long start = System.nanoTime();
+        Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                .isInstanceOf(RestClientException.class)
+                .hasRootCauseInstanceOf(IOException.class);
+
+        Assertions.assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1300));
+        Assertions.assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void should_count_failed_body_read_as_failure() {
+        byteDelayMillis = 100;
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                    .isInstanceOf(RestClientException.class)
+                    .hasRootCauseInstanceOf(IOException.class);
+        }
+
+        Assertions.assertThatThrownBy(() -> restTemplate.getForEntity(url, String.class))
+                .isInstanceOf(ResourceAccessException.class)
+                .hasCauseInstanceOf(CircuitOpenException.class);
+        Assertions.assertThat(requests.get()).isEqualTo(2);
+    }
+}
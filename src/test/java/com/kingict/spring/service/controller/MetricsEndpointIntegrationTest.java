@@ -0,0 +1,70 @@
+package com.kingict.spring.service.controller;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.repository.ProductRepository;
+import com.kingict.spring.service.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests that metrics of endpoints, search, query cache and upstream client are published on the Prometheus endpoint.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    private void search(String query) throws Exception {
+        MvcResult result = mockMvc.perform(get("/products/search").param("query", query)).andReturn();
+        mockMvc.perform(asyncDispatch(result));
+    }
+
+    @Test
+    public void should_publish_metrics_in_prometheus_format() throws Exception {
+        when(productRepository.findAll()).thenReturn(List.of(
+                new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg")));
+        productService.refreshCatalog();
+        search("red");
+        search("green");
+        search("RED");
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/products/search\"")))
+                .andExpect(content().string(containsString("products_search_duration_seconds_bucket{")))
+                .andExpect(content().string(containsString("products_search_total{result=\"hit\"} 1.0")))
+                .andExpect(content().string(containsString("products_search_total{result=\"miss\"} 1.0")))
+                .andExpect(content().string(containsString("products_search_results_products_count 2")))
+                .andExpect(content().string(containsString("products_search_executor_queued")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"product-search\",cache_manager=\"cacheManager\",name=\"product-search\",result=\"hit\"} 1.0")))
+                .andExpect(content().string(containsString("cache_evictions_total{cache=\"product-filter\"")))
+                .andExpect(content().string(containsString("products_upstream_circuit_breaker_state 0.0")))
+                .andExpect(content().string(containsString("logging_events_dropped_total")))
+                .andExpect(content().string(containsString("httpcomponents_httpclient_pool_total_max{httpclient=\"upstream\"}")));
+    }
+}
@@ -2,6 +2,7 @@ package com.kingict.spring.service.controller;
 
 import com.kingict.spring.service.model.Product;
 import com.kingict.spring.service.repository.ProductRepository;
+import com.kingict.spring.service.service.ProductService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,20 +11,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +45,9 @@ public class ProductControllerIntegrationTest {
     @MockBean
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductService productService;
+
     private Product expensiveRedProduct;
     private List<Product> products;
 
@@ -47,9 +58,23 @@ public class ProductControllerIntegrationTest {
         products = Arrays.asList(expensiveRedProduct, cheapBlueProduct);
     }
 
+    private void givenProductsInDatabase(List<Product> productsInDatabase) {
+        when(productRepository.findAll()).thenReturn(productsInDatabase);
+        // catalog is kept in memory, so it has to be reloaded after the mocked database changes
+        productService.refreshCatalog();
+    }
+
+    // search is handled asynchronously, its response is written in a second dispatch
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @Test
     public void should_return_all_products() throws Exception {
-        when(productRepository.findAll()).thenReturn(products);
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isOk())
@@ -61,7 +86,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_no_products() throws Exception {
-        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+        givenProductsInDatabase(Collections.emptyList());
         MockHttpServletRequestBuilder requestBuilder = get("/products");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isOk());
@@ -69,7 +94,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_product_by_id() throws Exception {
-        when(productRepository.findById(1L)).thenReturn(Optional.of(expensiveRedProduct));
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products/1");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isOk())
@@ -79,7 +104,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_not_found_for_invalid_product_id() throws Exception {
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        givenProductsInDatabase(Collections.emptyList());
         MockHttpServletRequestBuilder requestBuilder = get("/products/1");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isNotFound());
@@ -87,7 +112,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_all_categories() throws Exception {
-        when(productRepository.findAll()).thenReturn(products);
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products/categories");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isOk())
@@ -99,7 +124,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_no_content_when_no_categories() throws Exception {
-        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+        givenProductsInDatabase(Collections.emptyList());
         MockHttpServletRequestBuilder requestBuilder = get("/products/categories");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isNoContent());
@@ -107,7 +132,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_expensive_products() throws Exception {
-        when(productRepository.findAll()).thenReturn(products);
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products/filter")
                 .param("category", "Expensive")
                 .param("lower", "50")
@@ -136,7 +161,7 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_return_bad_request_for_invalid_category() throws Exception {
-        when(productRepository.findAll()).thenReturn(products);
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products/filter")
                 .param("category", "InvalidCategory");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
@@ -145,10 +170,10 @@ public class ProductControllerIntegrationTest {
 
     @Test
     public void should_search_red_products() throws Exception {
-        when(productRepository.findAll()).thenReturn(products);
+        givenProductsInDatabase(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products/search")
                 .param("query", "Red");
-        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        ResultActions resultActions = performAsync(requestBuilder);
         resultActions.andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.length()").value(1))
@@ -159,7 +184,25 @@ public class ProductControllerIntegrationTest {
     public void should_return_bad_request_for_empty_search_query() throws Exception {
         MockHttpServletRequestBuilder requestBuilder = get("/products/search")
                 .param("query", "");
-        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        ResultActions resultActions = performAsync(requestBuilder);
         resultActions.andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void should_change_etag_only_when_catalog_changes() throws Exception {
+        givenProductsInDatabase(products);
+        String eTag = mockMvc.perform(get("/products/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        givenProductsInDatabase(products);
+        mockMvc.perform(get("/products/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(productRepository, times(2)).findAll();
+
+        givenProductsInDatabase(List.of(expensiveRedProduct));
+        mockMvc.perform(get("/products/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
 }
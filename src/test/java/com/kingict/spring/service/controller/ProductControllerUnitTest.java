@@ -1,28 +1,49 @@
 package com.kingict.spring.service.controller;
 
 import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.search.Facets;
+import com.kingict.spring.service.service.CatalogVersion;
+import com.kingict.spring.service.service.FilterQuery;
+import com.kingict.spring.service.service.FilterResult;
 import com.kingict.spring.service.service.ProductService;
+import com.kingict.spring.service.service.SearchQuery;
+import com.kingict.spring.service.service.SearchResult;
+import com.kingict.spring.service.service.SearchUnavailableException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,17 +58,28 @@ public class ProductControllerUnitTest {
 
     private Product expensiveRedProduct;
     private List<Product> products;
+    private final CatalogVersion catalogVersion = new CatalogVersion("\"1a2b3c\"", Instant.parse("2025-01-01T00:00:00Z"));
 
     @BeforeEach
     public void setUp() {
         expensiveRedProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
         Product cheapBlueProduct = new Product(2L, "Blue Product", "Cheap", "It is blue.", 50.0, "http://example.com/blue_product.jpg");
         products = Arrays.asList(expensiveRedProduct, cheapBlueProduct);
+        when(productService.getCatalogVersion()).thenReturn(catalogVersion);
+        when(productService.loadCatalogVersion()).thenReturn(catalogVersion);
+    }
+
+    // search is handled asynchronously, its response is written in a second dispatch
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
     }
 
     @Test
     public void should_return_all_products() throws Exception {
-        when(productService.getProducts()).thenReturn(products);
+        when(productService.getProducts(null, null)).thenReturn(products);
         MockHttpServletRequestBuilder requestBuilder = get("/products");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isOk())
@@ -59,7 +91,7 @@ public class ProductControllerUnitTest {
 
     @Test
     public void should_return_no_content_when_no_products() throws Exception {
-        when(productService.getProducts()).thenReturn(Collections.emptyList());
+        when(productService.getProducts(null, null)).thenReturn(Collections.emptyList());
         MockHttpServletRequestBuilder requestBuilder = get("/products");
         ResultActions resultActions = mockMvc.perform(requestBuilder);
         resultActions.andExpect(status().isNoContent());
@@ -83,6 +115,39 @@ public class ProductControllerUnitTest {
         resultActions.andExpect(status().isNotFound());
     }
 
+    @Test
+    public void should_return_products_by_ids_in_requested_order() throws Exception {
+        Product cheapBlueProduct = products.get(1);
+        when(productService.getProductsByIds(List.of(2L, 5L, 1L, 2L))).thenReturn(List.of(cheapBlueProduct, expensiveRedProduct));
+        ResultActions resultActions = mockMvc.perform(get("/products").param("ids", "2,5,1,2"));
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("X-Missing-Ids", "5"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1a2b3c\""))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Blue Product"))
+                .andExpect(jsonPath("$[1].name").value("Red Product"));
+        verify(productService, never()).getProducts(any(), any());
+    }
+
+    @Test
+    public void should_return_no_content_when_no_requested_product_exists() throws Exception {
+        when(productService.getProductsByIds(List.of(7L, 8L))).thenReturn(List.of());
+        ResultActions resultActions = mockMvc.perform(get("/products").param("ids", "7,8"));
+        resultActions.andExpect(status().isNoContent())
+                .andExpect(header().string("X-Missing-Ids", "7,8"));
+    }
+
+    @Test
+    public void should_return_bad_request_for_invalid_ids() throws Exception {
+        String tooManyIds = String.join(",", Collections.nCopies(1001, "1"));
+        mockMvc.perform(get("/products").param("ids", "")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products").param("ids", "1,red")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products").param("ids", tooManyIds)).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products").param("ids", "1").param("fields", "weight")).andExpect(status().isBadRequest());
+
+        verify(productService, never()).getProductsByIds(any());
+    }
+
     @Test
     public void should_return_all_categories() throws Exception {
         List<String> categories = Arrays.asList("Expensive", "Cheap");
@@ -107,10 +172,9 @@ public class ProductControllerUnitTest {
     @Test
     public void should_return_expensive_products() throws Exception {
         List<Product> filteredProducts = List.of(expensiveRedProduct);
-        when(productService.filterProducts("expensive", 50.0, 150.0)).thenReturn(filteredProducts);
+        when(productService.filterProducts(new FilterQuery("expensive", 50.0, 150.0, null, null, false))).thenReturn(new FilterResult(filteredProducts, null));
 
-        List<String> categories = Arrays.asList("Expensive", "Cheap");
-        when(productService.getCategories()).thenReturn(categories);
+        when(productService.hasCategory("expensive")).thenReturn(true);
 
         MockHttpServletRequestBuilder requestBuilder = get("/products/filter")
                 .param("category", "Expensive")
@@ -124,6 +188,43 @@ public class ProductControllerUnitTest {
                 .andExpect(jsonPath("$[0].name").value("Red Product"));
     }
 
+    @Test
+    public void should_return_requested_facets_with_filtered_products() throws Exception {
+        Facets facets = new Facets(Map.of("Expensive", 1), List.of(new Facets.PriceBucket(0.0, 50.0, 0), new Facets.PriceBucket(50.0, null, 1)));
+        when(productService.filterProducts(new FilterQuery(null, 0.0, Double.MAX_VALUE, null, null, true)))
+                .thenReturn(new FilterResult(List.of(expensiveRedProduct), facets));
+
+        mockMvc.perform(get("/products/filter").param("facets", "price"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products.length()").value(1))
+                .andExpect(jsonPath("$.products[0].name").value("Red Product"))
+                .andExpect(jsonPath("$.facets.category").doesNotExist())
+                .andExpect(jsonPath("$.facets.price[1].from").value(50.0))
+                .andExpect(jsonPath("$.facets.price[1].count").value(1));
+    }
+
+    @Test
+    public void should_return_requested_facets_with_search_results() throws Exception {
+        Facets facets = new Facets(Map.of("Expensive", 1), List.of(new Facets.PriceBucket(0.0, null, 1)));
+        when(productService.searchProductsAsync(new SearchQuery("Red", null, null, false, true)))
+                .thenReturn(CompletableFuture.completedFuture(new SearchResult(List.of(expensiveRedProduct), false, facets)));
+
+        performAsync(get("/products/search").param("query", "Red").param("facets", "category,price").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].id").value(1))
+                .andExpect(jsonPath("$.products[0].name").doesNotExist())
+                .andExpect(jsonPath("$.facets.category.Expensive").value(1))
+                .andExpect(jsonPath("$.facets.price[0].count").value(1));
+    }
+
+    @Test
+    public void should_return_bad_request_for_unknown_facet() throws Exception {
+        mockMvc.perform(get("/products/filter").param("facets", "color"))
+                .andExpect(status().isBadRequest());
+        performAsync(get("/products/search").param("query", "Red").param("facets", ","))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void should_return_bad_request_for_invalid_price_range() throws Exception {
         MockHttpServletRequestBuilder requestBuilder1 = get("/products/filter")
@@ -150,21 +251,187 @@ public class ProductControllerUnitTest {
     @Test
     public void should_search_red_products() throws Exception {
         List<Product> searchResults = List.of(expensiveRedProduct);
-        when(productService.searchProducts("Red")).thenReturn(searchResults);
+        when(productService.searchProductsAsync(new SearchQuery("Red", null, null, false, false)))
+                .thenReturn(CompletableFuture.completedFuture(new SearchResult(searchResults, false)));
         MockHttpServletRequestBuilder requestBuilder = get("/products/search")
                 .param("query", "Red");
-        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        ResultActions resultActions = performAsync(requestBuilder);
         resultActions.andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].name").value("Red Product"));
     }
 
+    @Test
+    public void should_pass_fuzzy_flag_to_search() throws Exception {
+        when(productService.searchProductsAsync(new SearchQuery("Rde", null, null, true, false)))
+                .thenReturn(CompletableFuture.completedFuture(new SearchResult(List.of(expensiveRedProduct), false)));
+        MockHttpServletRequestBuilder requestBuilder = get("/products/search")
+                .param("query", "Rde")
+                .param("fuzzy", "true");
+        ResultActions resultActions = performAsync(requestBuilder);
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Red Product"));
+    }
+
     @Test
     public void should_return_bad_request_for_empty_search_query() throws Exception {
         MockHttpServletRequestBuilder requestBuilder = get("/products/search")
                 .param("query", "");
-        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        ResultActions resultActions = performAsync(requestBuilder);
+        resultActions.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void should_return_bad_request_for_too_long_search_query() throws Exception {
+        MockHttpServletRequestBuilder requestBuilder = get("/products/search")
+                .param("query", "red ".repeat(100));
+        ResultActions resultActions = performAsync(requestBuilder);
         resultActions.andExpect(status().isBadRequest());
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    public void should_return_first_page_with_link_to_next_page() throws Exception {
+        // controller asks for one extra product to find out if there is a next page
+        when(productService.getProducts(null, 2)).thenReturn(products);
+        MockHttpServletRequestBuilder requestBuilder = get("/products?limit=1");
+        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Red Product"))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/products?limit=1&after=1>; rel=\"next\""));
+    }
+
+    @Test
+    public void should_return_last_page_without_link() throws Exception {
+        when(productService.searchProductsAsync(new SearchQuery("Red", 1L, 2, false, false)))
+                .thenReturn(CompletableFuture.completedFuture(new SearchResult(List.of(expensiveRedProduct), false)));
+        MockHttpServletRequestBuilder requestBuilder = get("/products/search")
+                .param("query", "Red")
+                .param("after", "1")
+                .param("limit", "1");
+        ResultActions resultActions = performAsync(requestBuilder);
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void should_return_only_requested_fields() throws Exception {
+        when(productService.getProducts(null, null)).thenReturn(products);
+        MockHttpServletRequestBuilder requestBuilder = get("/products")
+                .param("fields", "price,name");
+        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Red Product"))
+                .andExpect(jsonPath("$[0].price").value(100.0))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].id").doesNotExist());
+    }
+
+    @Test
+    public void should_return_bad_request_for_invalid_page_parameters() throws Exception {
+        mockMvc.perform(get("/products").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products/filter").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        performAsync(get("/products/search").param("query", "Red").param("fields", "name,weight"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void should_mark_partial_search_results() throws Exception {
+        when(productService.searchProductsAsync(new SearchQuery("Red", null, null, false, false)))
+                .thenReturn(CompletableFuture.completedFuture(new SearchResult(List.of(expensiveRedProduct), true)));
+        ResultActions resultActions = performAsync(get("/products/search").param("query", "Red"));
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("X-Partial-Results", "true"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    public void should_return_service_unavailable_when_search_is_rejected() throws Exception {
+        when(productService.searchProductsAsync(new SearchQuery("Red", null, null, false, false)))
+                .thenReturn(CompletableFuture.failedFuture(new SearchUnavailableException("Too many searches in progress, try again later")));
+        ResultActions resultActions = performAsync(get("/products/search").param("query", "Red"));
+        resultActions.andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void should_return_catalog_version_headers() throws Exception {
+        when(productService.getProducts(null, null)).thenReturn(products);
+        ResultActions resultActions = mockMvc.perform(get("/products"));
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1a2b3c\""))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Wed, 01 Jan 2025 00:00:00 GMT"));
+    }
+
+    @Test
+    public void should_take_catalog_version_after_loading_catalog() throws Exception {
+        CatalogVersion loadedVersion = new CatalogVersion("\"4d5e6f\"", Instant.parse("2025-01-02T00:00:00Z"));
+        when(productService.loadCatalogVersion()).thenReturn(loadedVersion);
+        when(productService.getProducts(null, null)).thenReturn(products);
+
+        mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4d5e6f\""));
+
+        InOrder inOrder = inOrder(productService);
+        inOrder.verify(productService).loadCatalogVersion();
+        inOrder.verify(productService).getProducts(null, null);
+    }
+
+    @Test
+    public void should_return_not_modified_without_reading_products() throws Exception {
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, "\"1a2b3c\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/products/1").header(HttpHeaders.IF_NONE_MATCH, "\"1a2b3c\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/products/categories").header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 01 Jan 2025 00:00:00 GMT"))
+                .andExpect(status().isNotModified());
+
+        verify(productService, never()).getProducts(any(), any());
+        verify(productService, never()).getProductById(any());
+        verify(productService, never()).getCategories();
+    }
+
+    @Test
+    public void should_return_products_for_outdated_etag() throws Exception {
+        when(productService.getProducts(null, null)).thenReturn(products);
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, "\"ffff\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    public void should_suggest_completions() throws Exception {
+        when(productService.getMaxSuggestions()).thenReturn(10);
+        when(productService.suggest("re", 5)).thenReturn(List.of("red", "red product"));
+        mockMvc.perform(get("/products/suggest").param("prefix", "re").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]").value("red"))
+                .andExpect(jsonPath("$[1]").value("red product"));
+    }
+
+    @Test
+    public void should_return_no_content_without_suggestions() throws Exception {
+        when(productService.getMaxSuggestions()).thenReturn(10);
+        when(productService.suggest("xyz", null)).thenReturn(List.of());
+        mockMvc.perform(get("/products/suggest").param("prefix", "xyz"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void should_return_bad_request_for_invalid_suggestion_parameters() throws Exception {
+        when(productService.getMaxSuggestions()).thenReturn(10);
+        mockMvc.perform(get("/products/suggest").param("prefix", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products/suggest").param("prefix", "re").param("limit", "11"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).suggest(any(), any());
     }
 }
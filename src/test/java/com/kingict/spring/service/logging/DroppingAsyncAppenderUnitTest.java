@@ -0,0 +1,135 @@
+package com.kingict.spring.service.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DroppingAsyncAppenderUnitTest {
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger written = new AtomicInteger();
+
+    private LoggerContext context;
+    private Logger logger;
+    private DroppingAsyncAppender appender;
+
+    @BeforeEach
+    public void setUp() {
+        context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        logger = context.getLogger(DroppingAsyncAppenderUnitTest.class);
+
+        // stands in for a slow console or disk
+        AppenderBase<ILoggingEvent> slowAppender = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.incrementAndGet();
+            }
+        };
+        slowAppender.setContext(context);
+        slowAppender.start();
+
+        appender = new DroppingAsyncAppender();
+        appender.setContext(context);
+        appender.setQueueSize(1);
+        appender.addAppender(slowAppender);
+        appender.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        appender.stop();
+    }
+
+    private void append(Level level) {
+        appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, level, "message", null, null));
+    }
+
+    @Test
+    public void should_drop_and_count_events_below_warn_when_queue_is_full() throws InterruptedException {
+        append(Level.INFO);
+        Assertions.assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // first one fills the queue, the rest don't fit
+        append(Level.INFO);
+        append(Level.INFO);
+        append(Level.DEBUG);
+
+        Assertions.assertThat(appender.getDroppedCount()).isEqualTo(2);
+        Assertions.assertThat(DroppingAsyncAppender.getTotalDroppedCount()).isGreaterThanOrEqualTo(2);
+
+        release.countDown();
+        appender.stop();
+        Assertions.assertThat(written.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_write_warnings_and_errors_directly_when_queue_is_full() throws Exception {
+        append(Level.INFO);
+        Assertions.assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        append(Level.INFO);
+
+        // direct writes wait for the slow appender, so they run on another thread until it is released
+        Thread caller = new Thread(() -> {
+            append(Level.WARN);
+            append(Level.ERROR);
+        });
+        caller.start();
+        release.countDown();
+        caller.join(5000);
+        appender.stop();
+
+        Assertions.assertThat(appender.getDroppedCount()).isZero();
+        Assertions.assertThat(written.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_count_every_dropped_event_when_many_threads_log() throws Exception {
+        // queue keeps draining while it is filled, so it can fill up between checking for room and queueing
+        release.countDown();
+        Thread[] callers = new Thread[8];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    append(Level.INFO);
+                }
+            });
+            callers[i].start();
+        }
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        appender.stop();
+
+        Assertions.assertThat(written.get() + appender.getDroppedCount()).isEqualTo(8 * 1000);
+    }
+
+    @Test
+    public void should_not_drop_events_while_queue_has_room() throws InterruptedException {
+        append(Level.INFO);
+        Assertions.assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        append(Level.DEBUG);
+
+        Assertions.assertThat(appender.getDroppedCount()).isZero();
+    }
+}
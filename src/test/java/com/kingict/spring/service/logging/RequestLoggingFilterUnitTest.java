@@ -0,0 +1,69 @@
+package com.kingict.spring.service.logging;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+public class RequestLoggingFilterUnitTest {
+
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private RequestLoggingFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        filter = new RequestLoggingFilter();
+        ReflectionTestUtils.setField(filter, "sampleEvery", 3);
+        ReflectionTestUtils.setField(filter, "slowThreshold", Duration.ofMillis(500));
+    }
+
+    @Test
+    public void should_log_first_and_then_every_nth_successful_request() {
+        Assertions.assertThat(IntStream.range(0, 7).mapToObj(i -> filter.shouldLog("/products/{id}", 200, FAST)))
+                .containsExactly(true, false, false, true, false, false, true);
+    }
+
+    @Test
+    public void should_sample_every_endpoint_separately() {
+        filter.shouldLog("/products/{id}", 200, FAST);
+
+        Assertions.assertThat(filter.shouldLog("/products/search", 200, FAST)).isTrue();
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 200, FAST)).isFalse();
+    }
+
+    @Test
+    public void should_always_log_failed_and_slow_requests() {
+        filter.shouldLog("/products/{id}", 200, FAST);
+
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 404, FAST)).isTrue();
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 503, FAST)).isTrue();
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 200, SLOW)).isTrue();
+    }
+
+    @Test
+    public void should_not_log_successful_requests_when_sampling_is_disabled() {
+        ReflectionTestUtils.setField(filter, "sampleEvery", 0);
+
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 200, FAST)).isFalse();
+        Assertions.assertThat(filter.shouldLog("/products/{id}", 500, FAST)).isTrue();
+    }
+
+    @Test
+    public void should_pass_request_down_the_chain() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        Assertions.assertThat(chain.getRequest()).isSameAs(request);
+    }
+}
@@ -0,0 +1,41 @@
+package com.kingict.spring.service.repository;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.List;
+
+@DataJpaTest
+public class ProductRepositoryIntegrationTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Product expensiveRedProduct;
+    private Product expensiveBlueProduct;
+    private Product cheapBlueProduct;
+
+    @BeforeEach
+    public void setUp() {
+        cheapBlueProduct = new Product(3L, "Blue Product", "Cheap", "It is blue.", 10.0, "http://example.com/blue_product2.jpg");
+        expensiveBlueProduct = new Product(2L, "Blue Product", "Expensive", "It is expensive blue.", 120.0, "http://example.com/blue_product1.jpg");
+        expensiveRedProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
+        productRepository.saveAll(List.of(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+    }
+
+    @Test
+    public void should_insert_new_and_update_existing_products() {
+        Product updatedRedProduct = new Product(1L, "Red Product", "Cheap", "It is red and cheap now.", 5.0, "http://example.com/red_product.jpg");
+        Product greenProduct = new Product(4L, "Green Product", "Cheap", "It is green.", null, "http://example.com/green_product.jpg");
+
+        int written = productRepository.upsertAll(List.of(updatedRedProduct, greenProduct));
+
+        Assertions.assertThat(written).isEqualTo(2);
+        Assertions.assertThat(productRepository.findAll()).containsExactlyInAnyOrder(
+                updatedRedProduct, expensiveBlueProduct, cheapBlueProduct, greenProduct);
+    }
+}
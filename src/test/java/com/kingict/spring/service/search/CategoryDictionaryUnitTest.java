@@ -0,0 +1,36 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class CategoryDictionaryUnitTest {
+
+    private static CategoryDictionary dictionary;
+
+    @BeforeAll
+    public static void initialize() {
+        dictionary = CategoryDictionary.build(List.of(
+                new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/1.jpg"),
+                new Product(2L, "Blue Product", "Cheap", "It is blue.", 10.0, "http://example.com/2.jpg"),
+                new Product(3L, "Green Product", "Expensive", "It is green.", 120.0, "http://example.com/3.jpg"),
+                new Product(4L, "Unknown Product", null, "It has no category.", 1.0, "http://example.com/4.jpg")
+        ));
+    }
+
+    @Test
+    public void should_keep_distinct_categories_in_order_of_appearance() {
+        Assertions.assertThat(dictionary.getCategories()).containsExactly("Expensive", "Cheap");
+    }
+
+    @Test
+    public void should_find_category_ignoring_case() {
+        Assertions.assertThat(dictionary.contains("expensive")).isTrue();
+        Assertions.assertThat(dictionary.contains("CHEAP")).isTrue();
+        Assertions.assertThat(dictionary.contains("Free")).isFalse();
+        Assertions.assertThat(dictionary.contains(null)).isFalse();
+    }
+}
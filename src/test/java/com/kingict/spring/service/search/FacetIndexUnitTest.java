@@ -0,0 +1,79 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetIndexUnitTest {
+
+    private static FacetIndex index;
+
+    @BeforeAll
+    public static void initialize() {
+        index = FacetIndex.build(List.of(
+                new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg"),
+                new Product(2L, "Blue Product", "Expensive", "It is expensive blue.", 120.0, "http://example.com/blue_product1.jpg"),
+                new Product(3L, "Blue Product", "Cheap", "It is blue.", 10.0, "http://example.com/blue_product2.jpg"),
+                new Product(4L, "Green Product", null, "It has no price.", null, "http://example.com/green_product.jpg")
+        ), new double[]{100.0, 50.0});
+    }
+
+    @Test
+    public void should_count_categories_in_order_of_first_appearance() {
+        FacetCounter counter = index.newCounter();
+        for (int position = 0; position < 4; position++) {
+            counter.add(position);
+        }
+
+        Facets facets = counter.toFacets();
+
+        Assertions.assertThat(facets.categories()).containsExactly(Map.entry("Expensive", 2), Map.entry("Cheap", 1));
+    }
+
+    @Test
+    public void should_put_price_equal_to_bound_into_next_bucket() {
+        FacetCounter counter = index.newCounter();
+        for (int position = 0; position < 4; position++) {
+            counter.add(position);
+        }
+
+        Facets facets = counter.toFacets();
+
+        Assertions.assertThat(facets.prices()).containsExactly(
+                new Facets.PriceBucket(0.0, 50.0, 1),
+                new Facets.PriceBucket(50.0, 100.0, 0),
+                new Facets.PriceBucket(100.0, null, 2));
+    }
+
+    @Test
+    public void should_merge_counters_and_skip_empty_categories() {
+        FacetCounter first = index.newCounter();
+        FacetCounter second = index.newCounter();
+        first.add(0);
+        second.add(1);
+
+        first.addAll(second);
+
+        Assertions.assertThat(first.toFacets().categories()).containsExactly(Map.entry("Expensive", 2));
+        Assertions.assertThat(first.toFacets().prices()).extracting(Facets.PriceBucket::count).containsExactly(0, 0, 2);
+    }
+
+    @Test
+    public void should_count_categories_that_differ_only_in_case_together() {
+        FacetIndex index = FacetIndex.build(List.of(
+                new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg"),
+                new Product(2L, "Blue Product", "EXPENSIVE", "It is expensive blue.", 120.0, "http://example.com/blue_product1.jpg"),
+                new Product(3L, "Blue Product", "expensive", "It is blue.", 10.0, "http://example.com/blue_product2.jpg")
+        ), new double[]{});
+        FacetCounter counter = index.newCounter();
+        for (int position = 0; position < 3; position++) {
+            counter.add(position);
+        }
+
+        Assertions.assertThat(counter.toFacets().categories()).containsExactly(Map.entry("Expensive", 3));
+    }
+}
@@ -0,0 +1,82 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.utils.ProductScore;
+import com.kingict.spring.service.utils.TextUtils;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class InvertedIndexUnitTest {
+
+    private static List<Product> products;
+    private static InvertedIndex index;
+
+    @BeforeAll
+    public static void initialize() {
+        products = List.of(
+                new Product(1L, "Red Color Nail Polish", "Beauty", "Your favorite polisher.", 10.0, "http://example.com/1.jpg"),
+                new Product(2L, "Blue Lipstick", "Beauty", "Long lasting blue color.", 12.0, "http://example.com/2.jpg"),
+                new Product(3L, "Kitchen Knife", "Kitchen", "Sharp and durable.", 30.0, "http://example.com/3.jpg"),
+                new Product(4L, "Redhat Poster", "Decoration", null, 5.0, "http://example.com/4.jpg")
+        );
+        index = InvertedIndex.build(products);
+    }
+
+    @Test
+    public void should_find_no_candidates_for_empty_query() {
+        Assertions.assertThat(index.findCandidates(List.of()).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void should_find_candidates_by_substring_in_both_directions() {
+        // "red" is contained in "redhat" and "polishers" contains "polish"
+        Assertions.assertThat(index.findCandidates(List.of("red")).stream().toArray()).containsExactly(0, 3);
+        Assertions.assertThat(index.findCandidates(List.of("polishers")).stream().toArray()).containsExactly(0);
+        Assertions.assertThat(index.findCandidates(List.of("fav")).stream().toArray()).containsExactly(0);
+    }
+
+    @Test
+    public void should_score_same_as_product_score() {
+        for (String query : List.of("red", "blue color", "knife sharp", "fav", "coloru", "black eyeliner", "")) {
+            List<String> queryTokens = TextUtils.tokenize(query);
+            IntStream.range(0, products.size())
+                    .filter(position -> products.get(position).getDescription() != null)
+                    .forEach(position -> Assertions.assertThat(index.score(position, queryTokens))
+                            .isEqualTo(ProductScore.calculateScore(products.get(position), query)));
+        }
+    }
+
+    @Test
+    public void should_not_miss_any_product_with_positive_score() {
+        for (String query : List.of("red", "blue color", "knife sharp", "fav", "coloru", "black eyeliner", "e", "li", "lips")) {
+            List<String> queryTokens = TextUtils.tokenize(query);
+            int[] scored = IntStream.range(0, index.size())
+                    .filter(position -> index.score(position, queryTokens) > 0)
+                    .toArray();
+            Assertions.assertThat(index.findCandidates(queryTokens).stream().toArray()).isEqualTo(scored);
+        }
+    }
+
+    @Test
+    public void should_correct_only_tokens_without_match() {
+        Assertions.assertThat(index.correct(List.of("lipstik", "knfe", "polish", "re", "qwerty")))
+                .containsExactly("lipstick", "knife", "polish", "re", "qwerty");
+    }
+
+    @Test
+    public void should_find_tokens_contained_in_a_long_query_token() {
+        String longToken = "x".repeat(10_000) + "knife" + "x".repeat(10_000);
+
+        Assertions.assertThat(index.findCandidates(List.of(longToken)).stream().toArray()).containsExactly(2);
+    }
+
+    @Test
+    public void should_stop_collecting_candidates_when_expired() {
+        Assertions.assertThat(index.findCandidates(List.of("red", "knife"), () -> true).isEmpty()).isTrue();
+        Assertions.assertThat(index.correct(List.of("lipstik", "knfe"), () -> true)).containsExactly("lipstik", "knfe");
+    }
+}
@@ -0,0 +1,130 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PriceIndexUnitTest {
+
+    private static Product expensiveRedProduct;
+    private static Product expensiveBlueProduct;
+    private static Product cheapBlueProduct;
+    private static Product unpricedProduct;
+    private static PriceIndex index;
+
+    @BeforeAll
+    public static void initialize() {
+        cheapBlueProduct = new Product(3L, "Blue Product", "Cheap", "It is blue.", 10.0, "http://example.com/blue_product2.jpg");
+        expensiveBlueProduct = new Product(2L, "Blue Product", "Expensive", "It is expensive blue.", 120.0, "http://example.com/blue_product1.jpg");
+        expensiveRedProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
+        unpricedProduct = new Product(4L, "Green Product", "Cheap", "It has no price.", null, "http://example.com/green_product.jpg");
+        index = PriceIndex.build(List.of(cheapBlueProduct, expensiveBlueProduct, unpricedProduct, expensiveRedProduct));
+    }
+
+    @Test
+    public void should_filter_category_ignoring_case() {
+        List<Product> products = index.find("expensive", 0.0, Double.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE);
+
+        Assertions.assertThat(products).containsExactly(expensiveRedProduct, expensiveBlueProduct);
+    }
+
+    @Test
+    public void should_filter_price_range_inclusive() {
+        List<Product> products = index.find(null, 10.0, 100.0, Long.MIN_VALUE, Integer.MAX_VALUE);
+
+        Assertions.assertThat(products).containsExactly(expensiveRedProduct, cheapBlueProduct);
+    }
+
+    @Test
+    public void should_filter_category_and_price() {
+        List<Product> products = index.find("EXPENSIVE", 110.0, 150.0, Long.MIN_VALUE, Integer.MAX_VALUE);
+
+        Assertions.assertThat(products).containsExactly(expensiveBlueProduct);
+    }
+
+    @Test
+    public void should_page_filtered_products_by_id() {
+        List<Product> firstPage = index.find("", 0.0, Double.MAX_VALUE, Long.MIN_VALUE, 2);
+        List<Product> secondPage = index.find("", 0.0, Double.MAX_VALUE, firstPage.get(1).getId(), 2);
+
+        Assertions.assertThat(firstPage).containsExactly(expensiveRedProduct, expensiveBlueProduct);
+        Assertions.assertThat(secondPage).containsExactly(cheapBlueProduct);
+    }
+
+    @Test
+    public void should_skip_products_without_price() {
+        List<Product> products = index.find("Cheap", 0.0, Double.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE);
+
+        Assertions.assertThat(products).containsExactly(cheapBlueProduct).doesNotContain(unpricedProduct);
+    }
+
+    @Test
+    public void should_count_facets_of_whole_range_not_only_of_page() {
+        List<Product> catalog = List.of(cheapBlueProduct, expensiveBlueProduct, unpricedProduct, expensiveRedProduct);
+        FacetCounter facets = FacetIndex.build(catalog, new double[]{50.0}).newCounter();
+
+        List<Product> page = PriceIndex.build(catalog).find(null, 0.0, 110.0, 1L, 1, facets);
+
+        Assertions.assertThat(page).containsExactly(cheapBlueProduct);
+        Assertions.assertThat(facets.toFacets().categories()).containsExactly(Map.entry("Cheap", 1), Map.entry("Expensive", 1));
+        Assertions.assertThat(facets.toFacets().prices()).extracting(Facets.PriceBucket::count).containsExactly(1, 1);
+    }
+
+    @Test
+    public void should_return_empty_page_and_count_facets_for_zero_limit() {
+        List<Product> catalog = List.of(cheapBlueProduct, expensiveBlueProduct, unpricedProduct, expensiveRedProduct);
+        FacetCounter facets = FacetIndex.build(catalog, new double[]{50.0}).newCounter();
+
+        List<Product> page = PriceIndex.build(catalog).find(null, 0.0, 110.0, Long.MIN_VALUE, 0, facets);
+
+        Assertions.assertThat(page).isEmpty();
+        Assertions.assertThat(index.find(null, 0.0, Double.MAX_VALUE, Long.MIN_VALUE, -1)).isEmpty();
+        Assertions.assertThat(facets.toFacets().categories()).containsExactly(Map.entry("Cheap", 1), Map.entry("Expensive", 1));
+    }
+
+    @Test
+    public void should_return_nothing_for_unknown_category_or_empty_range() {
+        Assertions.assertThat(index.find("Free", 0.0, Double.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE)).isEmpty();
+        Assertions.assertThat(index.find(null, 200.0, 100.0, Long.MIN_VALUE, Integer.MAX_VALUE)).isEmpty();
+        Assertions.assertThat(index.find(null, 101.0, 119.0, Long.MIN_VALUE, Integer.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    public void should_page_through_wide_range_in_id_order() {
+        // ids in random order and with repeated prices, so price order and id order differ
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            ids.add(id * 3);
+        }
+        Random random = new Random(42);
+        Collections.shuffle(ids, random);
+        List<Product> catalog = new ArrayList<>();
+        for (Long id : ids) {
+            catalog.add(new Product(id, "Product " + id, "Cheap", "Product.", (double) random.nextInt(100), "http://example.com/product.jpg"));
+        }
+        List<Product> expected = catalog.stream()
+                .filter(product -> product.getPrice() >= 20.0 && product.getPrice() <= 80.0)
+                .sorted(Comparator.comparing(Product::getId))
+                .toList();
+        PriceIndex catalogIndex = PriceIndex.build(catalog);
+
+        List<Product> paged = new ArrayList<>();
+        long after = Long.MIN_VALUE;
+        List<Product> page;
+        while (!(page = catalogIndex.find("cheap", 20.0, 80.0, after, 7)).isEmpty()) {
+            Assertions.assertThat(page.size()).isLessThanOrEqualTo(7);
+            paged.addAll(page);
+            after = page.get(page.size() - 1).getId();
+        }
+
+        Assertions.assertThat(paged).containsExactlyElementsOf(expected);
+    }
+}
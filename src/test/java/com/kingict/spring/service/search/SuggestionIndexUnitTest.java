@@ -0,0 +1,67 @@
+package com.kingict.spring.service.search;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SuggestionIndexUnitTest {
+
+    private static SuggestionIndex index;
+
+    @BeforeAll
+    public static void initialize() {
+        index = SuggestionIndex.build(List.of(
+                new Product(1L, "Red Nail Polish", "Beauty", "Red polish for nails.", 10.0, "http://example.com/1.jpg"),
+                new Product(2L, "Red Lipstick", "Beauty", "Long lasting red color.", 12.0, "http://example.com/2.jpg"),
+                new Product(3L, "Redhat Poster", "Decoration", "Poster of a red hat.", 5.0, "http://example.com/3.jpg"),
+                new Product(4L, "Kitchen Knife", "Kitchen", null, 30.0, "http://example.com/4.jpg")
+        ), 3);
+    }
+
+    @Test
+    public void should_suggest_most_frequent_completions_first() {
+        // "red" is in two names and three descriptions, names and other tokens are in one product each
+        Assertions.assertThat(index.suggest("re", 3)).containsExactly("red", "redhat", "red lipstick");
+        Assertions.assertThat(index.suggest("Po", 3)).containsExactly("polish", "poster");
+    }
+
+    @Test
+    public void should_suggest_names_after_complete_word() {
+        Assertions.assertThat(index.suggest("red ", 3)).containsExactly("red lipstick", "red nail polish");
+        Assertions.assertThat(index.suggest("red n", 3)).containsExactly("red nail polish");
+        Assertions.assertThat(index.suggest("Kitchen K", 3)).containsExactly("kitchen knife");
+    }
+
+    @Test
+    public void should_not_suggest_anything_for_unknown_or_empty_prefix() {
+        Assertions.assertThat(index.suggest("blue", 3)).isEmpty();
+        Assertions.assertThat(index.suggest("redhats", 3)).isEmpty();
+        Assertions.assertThat(index.suggest("  ", 3)).isEmpty();
+        Assertions.assertThat(SuggestionIndex.build(List.of(), 3).suggest("red", 3)).isEmpty();
+    }
+
+    @Test
+    public void should_limit_suggestions_to_maximum() {
+        Assertions.assertThat(index.suggest("r", 1)).containsExactly("red");
+        Assertions.assertThat(index.suggest("r", 10)).hasSize(3);
+    }
+
+    @Test
+    public void should_rank_large_nodes_same_as_small_ones() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            // token "item<i % 50>" appears in ten products each, names are unique
+            products.add(new Product((long) i, "Item" + (i % 50) + " Thing" + i, "Misc", "Item" + (i % 7) + " text.", 1.0, null));
+        }
+        SuggestionIndex large = SuggestionIndex.build(products, 5);
+
+        // item0 .. item6 are also in descriptions, item1 .. item3 of one more product than the others
+        Assertions.assertThat(large.suggest("item", 5)).containsExactly("item1", "item2", "item3", "item0", "item4");
+        Assertions.assertThat(large.suggest("thing49", 5)).containsExactly("thing49", "thing490", "thing491", "thing492", "thing493");
+        Assertions.assertThat(large.getNodeCount()).isLessThan(2 * large.size());
+    }
+}
@@ -0,0 +1,63 @@
+package com.kingict.spring.service.search;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class TopKCollectorUnitTest {
+
+    @Test
+    public void should_keep_best_k_in_same_order_as_full_sort() {
+        Random random = new Random(42);
+        // few distinct scores, so there are a lot of ties
+        int[] scores = IntStream.range(0, 1000).map(i -> random.nextInt(10)).toArray();
+
+        for (int k : new int[]{0, 1, 5, 100, 1000}) {
+            TopKCollector topK = new TopKCollector(k);
+            IntStream.range(0, scores.length).forEach(position -> topK.offer(scores[position], position));
+
+            int[] expected = IntStream.range(0, scores.length).boxed()
+                    .sorted(Comparator.<Integer>comparingInt(position -> scores[position]).reversed())
+                    .limit(k)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            Assertions.assertThat(topK.toSortedPositions()).as("k = %d", k).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void should_not_depend_on_offer_order() {
+        TopKCollector inOrder = new TopKCollector(3);
+        TopKCollector reversed = new TopKCollector(3);
+        int[] scores = {5, 7, 7, 1, 7, 5};
+        for (int position = 0; position < scores.length; position++) {
+            inOrder.offer(scores[position], position);
+        }
+        for (int position = scores.length - 1; position >= 0; position--) {
+            reversed.offer(scores[position], position);
+        }
+
+        Assertions.assertThat(inOrder.toSortedPositions()).containsExactly(1, 2, 4);
+        Assertions.assertThat(reversed.toSortedPositions()).containsExactly(1, 2, 4);
+    }
+
+    @Test
+    public void should_merge_partial_results() {
+        TopKCollector first = new TopKCollector(2);
+        first.offer(3, 0);
+        first.offer(9, 1);
+        first.offer(4, 2);
+        TopKCollector second = new TopKCollector(2);
+        second.offer(9, 3);
+        second.offer(1, 4);
+
+        TopKCollector merged = new TopKCollector(2);
+        merged.offerAll(second);
+        merged.offerAll(first);
+
+        Assertions.assertThat(merged.toSortedPositions()).containsExactly(1, 3);
+    }
+}
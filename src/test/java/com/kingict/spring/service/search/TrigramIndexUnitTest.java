@@ -0,0 +1,49 @@
+package com.kingict.spring.service.search;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class TrigramIndexUnitTest {
+
+    private static TrigramIndex index;
+
+    @BeforeAll
+    public static void initialize() {
+        index = TrigramIndex.build(List.of("red", "redhat", "polish", "polisher", "blue", "glue", "lipstick", "a1b2c3", "x"));
+    }
+
+    @Test
+    public void should_find_tokens_containing_word() {
+        Assertions.assertThat(index.findContaining("red")).containsExactlyInAnyOrder("red", "redhat");
+        Assertions.assertThat(index.findContaining("lish")).containsExactlyInAnyOrder("polish", "polisher");
+        Assertions.assertThat(index.findContaining("1b2")).containsExactly("a1b2c3");
+        Assertions.assertThat(index.findContaining("hatred")).isEmpty();
+    }
+
+    @Test
+    public void should_find_tokens_containing_short_word() {
+        Assertions.assertThat(index.findContaining("ue")).containsExactlyInAnyOrder("blue", "glue");
+        Assertions.assertThat(index.findContaining("x")).containsExactly("x");
+    }
+
+    @Test
+    public void should_find_closest_tokens_within_max_edits() {
+        Assertions.assertThat(index.findSimilar("lipstik", 2)).containsExactly("lipstick");
+        Assertions.assertThat(index.findSimilar("polishesr", 2)).containsExactly("polisher");
+        // both are one edit away
+        Assertions.assertThat(index.findSimilar("polishr", 2)).containsExactlyInAnyOrder("polish", "polisher");
+        Assertions.assertThat(index.findSimilar("flue", 1)).containsExactlyInAnyOrder("blue", "glue");
+        Assertions.assertThat(index.findSimilar("blue", 1)).containsExactly("blue");
+        Assertions.assertThat(index.findSimilar("lpstck", 1)).isEmpty();
+    }
+
+    @Test
+    public void should_bound_edit_distance() {
+        Assertions.assertThat(TrigramIndex.editDistance("kitten", "sitting", 5)).isEqualTo(3);
+        Assertions.assertThat(TrigramIndex.editDistance("kitten", "sitting", 1)).isEqualTo(2);
+        Assertions.assertThat(TrigramIndex.editDistance("", "abc", 5)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,58 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogSnapshotUnitTest {
+
+    private static final double[] PRICE_BUCKETS = {50.0, 100.0};
+
+    private final Product redProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
+    private final Product blueProduct = new Product(2L, "Blue Product", "Expensive", "It is blue.", 120.0, "http://example.com/blue_product.jpg");
+    private final Product greenProduct = new Product(3L, "Green Product", "Cheap", "It is green.", 10.0, "http://example.com/green_product.jpg");
+
+    @Test
+    void should_page_products_by_id() {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(List.of(greenProduct, redProduct, blueProduct), null, 10, PRICE_BUCKETS);
+
+        Assertions.assertThat(snapshot.getProducts(Long.MIN_VALUE, 2)).containsExactly(redProduct, blueProduct);
+        Assertions.assertThat(snapshot.getProducts(2L, 2)).containsExactly(greenProduct);
+        Assertions.assertThat(snapshot.getProducts(0L, Integer.MAX_VALUE)).containsExactly(redProduct, blueProduct, greenProduct);
+        Assertions.assertThat(snapshot.getProducts(3L, 2)).isEmpty();
+    }
+
+    @Test
+    void should_find_product_by_id() {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(List.of(greenProduct, redProduct), null, 10, PRICE_BUCKETS);
+
+        Assertions.assertThat(snapshot.getProduct(1L)).isEqualTo(redProduct);
+        Assertions.assertThat(snapshot.getProduct(2L)).isNull();
+    }
+
+    @Test
+    void should_keep_products_and_indexes_of_its_own_catalog() {
+        List<Product> products = new ArrayList<>(List.of(redProduct, blueProduct));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(products, null, 10, PRICE_BUCKETS);
+
+        products.add(greenProduct);
+
+        Assertions.assertThat(snapshot.getProducts()).containsExactly(redProduct, blueProduct);
+        Assertions.assertThat(snapshot.getCategoryDictionary().getCategories()).containsExactly("Expensive");
+        Assertions.assertThat(snapshot.getSearchIndex().size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_keep_version_of_previous_snapshot_with_same_products() {
+        CatalogSnapshot previous = CatalogSnapshot.build(List.of(redProduct, blueProduct), null, 10, PRICE_BUCKETS);
+
+        CatalogSnapshot same = CatalogSnapshot.build(List.of(redProduct, blueProduct), previous, 10, PRICE_BUCKETS);
+        CatalogSnapshot changed = CatalogSnapshot.build(List.of(redProduct, greenProduct), previous, 10, PRICE_BUCKETS);
+
+        Assertions.assertThat(same.getVersion()).isSameAs(previous.getVersion());
+        Assertions.assertThat(changed.getVersion().eTag()).isNotEqualTo(previous.getVersion().eTag());
+    }
+}
@@ -0,0 +1,34 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+public class CatalogVersionUnitTest {
+
+    private final Product redProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
+    private final Product blueProduct = new Product(2L, "Blue Product", "Cheap", "It is blue.", 50.0, "http://example.com/blue_product.jpg");
+
+    @Test
+    void should_keep_previous_version_for_same_content() {
+        CatalogVersion previous = new CatalogVersion(CatalogVersion.of(List.of(redProduct, blueProduct), null).eTag(), Instant.EPOCH);
+
+        CatalogVersion version = CatalogVersion.of(List.of(redProduct, blueProduct), previous);
+
+        Assertions.assertThat(version).isSameAs(previous);
+    }
+
+    @Test
+    void should_change_version_when_any_product_changes() {
+        CatalogVersion previous = CatalogVersion.of(List.of(redProduct, blueProduct), null);
+        Product cheaperBlueProduct = new Product(2L, "Blue Product", "Cheap", "It is blue.", 40.0, "http://example.com/blue_product.jpg");
+
+        CatalogVersion version = CatalogVersion.of(List.of(redProduct, cheaperBlueProduct), previous);
+
+        Assertions.assertThat(version.eTag()).isNotEqualTo(previous.eTag()).startsWith("\"").endsWith("\"");
+        Assertions.assertThat(version.lastModified()).isAfterOrEqualTo(previous.lastModified());
+    }
+}
@@ -0,0 +1,171 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests loading of products into an empty database against a local stub of the products API.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProductServiceBootstrapIntegrationTest {
+
+    private static final String PRODUCTS_JSON = "{\"products\":["
+            + "{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\",\"price\":100.0,\"thumbnail\":\"http://example.com/red_product.jpg\"},"
+            + "{\"id\":2,\"title\":\"Blue Product\",\"description\":\"It is blue.\",\"category\":\"Cheap\",\"price\":50.0,\"thumbnail\":\"http://example.com/blue_product.jpg\"}]}";
+
+    private static final int CALLERS = 8;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private SearchExecutor searchExecutor;
+
+    private ProductService productService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer upstream;
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private volatile int upstreamDelayMillis = 500;
+    private volatile int upstreamStatus = 200;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/products", exchange -> {
+            upstreamRequests.incrementAndGet();
+            try {
+                Thread.sleep(upstreamDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = PRODUCTS_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(upstreamStatus, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        upstream.start();
+
+        productService = new ProductService(productRepository, new RestTemplate(), searchExecutor, new ProductMetrics(meterRegistry), new ProductQueryCache(new NoOpCacheManager()),
+                new SimpleAsyncTaskExecutor());
+        ReflectionTestUtils.setField(productService, "PRODUCTS_URL", "http://localhost:" + upstream.getAddress().getPort() + "/products");
+        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    private List<Future<List<Product>>> callConcurrently(Callable<List<Product>> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Product>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        return results;
+    }
+
+    @Test
+    void should_fetch_products_once_for_concurrent_callers() throws Exception {
+        List<Future<List<Product>>> results = callConcurrently(productService::getProducts);
+
+        for (Future<List<Product>> result : results) {
+            Assertions.assertThat(result.get()).hasSize(2);
+        }
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(1);
+        Mockito.verify(productRepository, Mockito.times(1)).upsertAll(any(List.class));
+    }
+
+    @Test
+    void should_fail_all_callers_after_timeout_and_keep_loading_in_background() throws Exception {
+        ReflectionTestUtils.setField(productService, "bootstrapTimeout", Duration.ofMillis(100));
+
+        List<Future<List<Product>>> results = callConcurrently(productService::getProducts);
+
+        for (Future<List<Product>> result : results) {
+            // caller that started the load doesn't wait for upstream any longer than the others
+            Assertions.assertThatThrownBy(result::get).hasCauseInstanceOf(CatalogUnavailableException.class);
+        }
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(1);
+
+        // next caller joins the load that is still running, or finds its result
+        ReflectionTestUtils.setField(productService, "bootstrapTimeout", Duration.ofSeconds(5));
+        Assertions.assertThat(productService.getProducts()).hasSize(2);
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_all_callers_and_retry_when_upstream_fails() throws Exception {
+        upstreamStatus = 500;
+
+        List<Future<List<Product>>> results = callConcurrently(productService::getProducts);
+
+        for (Future<List<Product>> result : results) {
+            Assertions.assertThatThrownBy(result::get).hasCauseInstanceOf(CatalogUnavailableException.class);
+        }
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(1);
+        Mockito.verify(productRepository, Mockito.never()).upsertAll(any(List.class));
+
+        upstreamStatus = 200;
+        upstreamDelayMillis = 0;
+        Assertions.assertThat(productService.getProducts()).hasSize(2);
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void should_return_version_of_catalog_that_is_being_loaded() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<List<Product>> loading = executor.submit(() -> productService.getProducts());
+        while (upstreamRequests.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        // waits for the load instead of returning version of the empty catalog
+        CatalogVersion version = productService.getCatalogVersion();
+
+        Assertions.assertThat(loading.get()).hasSize(2);
+        Assertions.assertThat(version).isEqualTo(productService.loadCatalogVersion());
+        Assertions.assertThat(upstreamRequests.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,164 @@
+package com.kingict.spring.service.service;
+
+import com.kingict.spring.service.model.Product;
+import com.kingict.spring.service.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests synchronization of stored products against a local stub of the products API that supports conditional requests.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProductServiceSyncIntegrationTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 01 Jan 2025 00:00:00 GMT";
+
+    private static final String PRODUCTS_JSON = "{\"products\":["
+            + "{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\",\"price\":100.0,\"thumbnail\":\"http://example.com/red_product.jpg\"},"
+            + "{\"id\":2,\"title\":\"Blue Product\",\"description\":\"It is blue.\",\"category\":\"Cheap\",\"price\":40.0,\"thumbnail\":\"http://example.com/blue_product.jpg\"},"
+            + "{\"id\":4,\"title\":\"Green Product\",\"description\":\"It is green.\",\"category\":\"Cheap\",\"price\":20.0,\"thumbnail\":\"http://example.com/green_product.jpg\"}]}";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private SearchExecutor searchExecutor;
+
+    private ProductService productService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer upstream;
+    private final List<String> ifNoneMatchHeaders = new CopyOnWriteArrayList<>();
+    private final List<String> ifModifiedSinceHeaders = new CopyOnWriteArrayList<>();
+    private volatile String upstreamBody = PRODUCTS_JSON;
+    private volatile boolean upstreamSendsETag = true;
+
+    private final Product redProduct = new Product(1L, "Red Product", "Expensive", "It is red.", 100.0, "http://example.com/red_product.jpg");
+    private final Product blueProduct = new Product(2L, "Blue Product", "Cheap", "It is blue.", 50.0, "http://example.com/blue_product.jpg");
+    private final Product yellowProduct = new Product(3L, "Yellow Product", "Cheap", "It is yellow.", 30.0, "http://example.com/yellow_product.jpg");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        upstream.createContext("/products", exchange -> {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            ifNoneMatchHeaders.add(String.valueOf(ifNoneMatch));
+            ifModifiedSinceHeaders.add(String.valueOf(ifModifiedSince));
+
+            if (upstreamSendsETag) {
+                exchange.getResponseHeaders().add("ETag", ETAG);
+            }
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if ((upstreamSendsETag && ETAG.equals(ifNoneMatch)) || (!upstreamSendsETag && LAST_MODIFIED.equals(ifModifiedSince))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = upstreamBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        upstream.start();
+
+        productService = new ProductService(productRepository, new RestTemplate(), searchExecutor, new ProductMetrics(meterRegistry), new ProductQueryCache(new NoOpCacheManager()), Runnable::run);
+        ReflectionTestUtils.setField(productService, "PRODUCTS_URL", "http://localhost:" + upstream.getAddress().getPort() + "/products");
+        when(productRepository.findAll()).thenReturn(List.of(redProduct, blueProduct, yellowProduct));
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void should_write_only_new_changed_and_removed_products() {
+        CatalogSyncResult result = productService.syncCatalog();
+
+        Assertions.assertThat(result).isEqualTo(new CatalogSyncResult(true, true, 2, 1));
+        Mockito.verify(productRepository).upsertAll(List.of(
+                new Product(2L, "Blue Product", "Cheap", "It is blue.", 40.0, "http://example.com/blue_product.jpg"),
+                new Product(4L, "Green Product", "Cheap", "It is green.", 20.0, "http://example.com/green_product.jpg")));
+        Mockito.verify(productRepository).deleteAllByIdInBatch(Set.of(3L));
+    }
+
+    @Test
+    void should_not_write_anything_when_feed_is_not_modified() {
+        productService.syncCatalog();
+        Mockito.clearInvocations(productRepository);
+
+        CatalogSyncResult result = productService.syncCatalog();
+
+        Assertions.assertThat(result).isEqualTo(CatalogSyncResult.NOT_MODIFIED);
+        Assertions.assertThat(ifNoneMatchHeaders).containsExactly("null", ETAG);
+        Mockito.verifyNoInteractions(productRepository);
+        Assertions.assertThat(meterRegistry.get("products.upstream.fetch").tag("outcome", "not_modified").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_send_if_modified_since_when_feed_has_no_etag() {
+        upstreamSendsETag = false;
+
+        productService.syncCatalog();
+        CatalogSyncResult result = productService.syncCatalog();
+
+        Assertions.assertThat(result).isEqualTo(CatalogSyncResult.NOT_MODIFIED);
+        Assertions.assertThat(ifModifiedSinceHeaders).containsExactly("null", LAST_MODIFIED);
+        Assertions.assertThat(ifNoneMatchHeaders).containsExactly("null", "null");
+    }
+
+    @Test
+    void should_not_write_anything_when_stored_products_are_unchanged() {
+        upstreamSendsETag = false;
+        upstreamBody = "{\"products\":["
+                + "{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\",\"price\":100.0,\"thumbnail\":\"http://example.com/red_product.jpg\"}]}";
+        when(productRepository.findAll()).thenReturn(List.of(redProduct));
+
+        CatalogSyncResult result = productService.syncCatalog();
+
+        Assertions.assertThat(result).isEqualTo(new CatalogSyncResult(true, true, 0, 0));
+        Mockito.verify(productRepository, Mockito.never()).upsertAll(any(List.class));
+        Mockito.verify(productRepository, Mockito.never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void should_not_delete_products_when_feed_is_broken() {
+        upstreamBody = PRODUCTS_JSON.substring(0, PRODUCTS_JSON.indexOf("{\"id\":4"));
+
+        CatalogSyncResult result = productService.syncCatalog();
+
+        Assertions.assertThat(result.complete()).isFalse();
+        Assertions.assertThat(result.deleted()).isZero();
+        Mockito.verify(productRepository, Mockito.never()).deleteAllByIdInBatch(any());
+
+        // validators of a broken feed aren't kept, so the next sync reads it again
+        upstreamBody = PRODUCTS_JSON;
+        productService.syncCatalog();
+        Assertions.assertThat(ifNoneMatchHeaders).containsExactly("null", "null");
+        Mockito.verify(productRepository).deleteAllByIdInBatch(Set.of(3L));
+    }
+}
@@ -2,8 +2,11 @@ package com.kingict.spring.service.service;
 
 import com.kingict.spring.service.model.Product;
 import com.kingict.spring.service.repository.ProductRepository;
+import com.kingict.spring.service.search.Facets;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jdk.jfr.Description;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,16 +15,33 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +55,9 @@ public class ProductServiceUnitTest {
 
     @InjectMocks
     private ProductService productService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SearchExecutor searchExecutor;
 
     private static Product expensiveRedProduct;
     private static Product expensiveBlueProduct;
@@ -50,9 +73,14 @@ public class ProductServiceUnitTest {
 
     @BeforeEach
     void setUp() {
-        productService = new ProductService(productRepository);
+        searchExecutor = new SearchExecutor(1, 10, 1);
+        productService = new ProductService(productRepository, restTemplate, searchExecutor, new ProductMetrics(meterRegistry), new ProductQueryCache(new NoOpCacheManager()), Runnable::run);
         ReflectionTestUtils.setField(productService, "PRODUCTS_URL", "http://example.com/api/products");
-        ReflectionTestUtils.setField(productService, "restTemplate", restTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchExecutor.destroy();
     }
 
     @Test
@@ -78,7 +106,7 @@ public class ProductServiceUnitTest {
                 cheapBlueProduct.getId(), cheapBlueProduct.getName(), cheapBlueProduct.getDescription(), cheapBlueProduct.getCategory(), cheapBlueProduct.getPrice(), cheapBlueProduct.getImageUrl());
 
         // mock result for http request
-        when(restTemplate.getForObject(any(String.class), eq(String.class))).thenReturn(rawJson);
+        mockApiResponse(rawJson);
 
         List<Product> products = productService.getProducts();
 
@@ -86,12 +114,60 @@ public class ProductServiceUnitTest {
         Assertions.assertThat(products.get(0)).isEqualTo(expensiveRedProduct);
         Assertions.assertThat(products.get(1)).isEqualTo(cheapBlueProduct);
 
-        Mockito.verify(productRepository, Mockito.times(1)).saveAll(any(List.class));
+        Mockito.verify(productRepository, Mockito.times(1)).upsertAll(any(List.class));
+    }
+
+    @Test
+    void should_load_products_from_url_before_returning_catalog_version() {
+        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+        mockApiResponse("{\"products\":[{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\","
+                + "\"price\":100.0,\"thumbnail\":\"http://example.com/red_product.jpg\"}]}");
+
+        CatalogVersion version = productService.loadCatalogVersion();
+
+        Assertions.assertThat(productService.getProducts()).containsExactly(expensiveRedProduct);
+        Assertions.assertThat(productService.getCatalogVersion()).isEqualTo(version);
+        Mockito.verify(productRepository, Mockito.times(1)).upsertAll(any(List.class));
+    }
+
+    @Test
+    void should_stream_products_from_url_in_chunks() {
+        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+        ReflectionTestUtils.setField(productService, "ingestChunkSize", 1);
+        mockApiResponse("{\"total\":2,\"meta\":{\"tags\":[\"a\",{\"products\":[]}]},\"products\":["
+                + "{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\",\"price\":100.0,"
+                + "\"thumbnail\":\"http://example.com/red_product.jpg\",\"tags\":[\"red\"],\"dimensions\":{\"width\":1}},"
+                + "{\"id\":3,\"title\":\"Blue Product\",\"description\":\"It is blue.\",\"category\":\"Cheap\",\"price\":10.0,"
+                + "\"thumbnail\":\"http://example.com/blue_product2.jpg\"}],\"skip\":0}");
+
+        List<Product> products = productService.getProducts();
+
+        Assertions.assertThat(products).containsExactly(expensiveRedProduct, cheapBlueProduct);
+        Mockito.verify(productRepository).upsertAll(List.of(expensiveRedProduct));
+        Mockito.verify(productRepository).upsertAll(List.of(cheapBlueProduct));
+    }
+
+    @Test
+    void should_keep_products_read_before_invalid_json() {
+        when(productRepository.findAll()).thenReturn(Collections.emptyList());
+        mockApiResponse("{\"products\":[{\"id\":1,\"title\":\"Red Product\",\"description\":\"It is red.\",\"category\":\"Expensive\","
+                + "\"price\":100.0,\"thumbnail\":\"http://example.com/red_product.jpg\"},{\"id\":");
+
+        List<Product> products = productService.getProducts();
+
+        Assertions.assertThat(products).containsExactly(expensiveRedProduct);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockApiResponse(String json) {
+        when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> invocation.getArgument(3, ResponseExtractor.class)
+                        .extractData(new MockClientHttpResponse(json.getBytes(StandardCharsets.UTF_8), HttpStatus.OK)));
     }
 
     @Test
     void should_get_product_by_id_1() {
-        when(productRepository.findById(1L)).thenReturn(Optional.of(expensiveRedProduct));
+        when(productRepository.findAll()).thenReturn(List.of(expensiveRedProduct, cheapBlueProduct));
 
         Product foundProduct = productService.getProductById(1L);
 
@@ -99,9 +175,19 @@ public class ProductServiceUnitTest {
         Assertions.assertThat(foundProduct).isEqualTo(expensiveRedProduct);
     }
 
+    @Test
+    void should_get_products_by_ids_in_requested_order() {
+        when(productRepository.findAll()).thenReturn(List.of(expensiveRedProduct, expensiveBlueProduct, cheapBlueProduct));
+
+        List<Product> products = productService.getProductsByIds(List.of(3L, 9L, 1L, 3L));
+
+        Assertions.assertThat(products).containsExactly(cheapBlueProduct, expensiveRedProduct);
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
+    }
+
     @Test
     void should_not_filter_anything() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct));
+        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct, cheapBlueProduct));
 
         List<Product> filteredProducts = productService.filterProducts("Expensive", 0.0, Double.MAX_VALUE);
 
@@ -112,31 +198,42 @@ public class ProductServiceUnitTest {
 
     @Test
     void should_filter_everything() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct));
-        List<Product> filteredProducts = productService.filterProducts("Cheap", 0.0, Double.MAX_VALUE);
+        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct, cheapBlueProduct));
+
+        List<Product> filteredProducts = productService.filterProducts("Cheap", 50.0, Double.MAX_VALUE);
 
         Assertions.assertThat(filteredProducts).hasSize(0);
     }
 
     @Test
     void should_include_products_over_15() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct));
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
 
         List<Product> filteredProducts = productService.filterProducts(null, 15.0, Double.MAX_VALUE);
 
-        Assertions.assertThat(filteredProducts).hasSize(1);
-        Assertions.assertThat(filteredProducts.get(0)).isEqualTo(expensiveBlueProduct);
+        Assertions.assertThat(filteredProducts).containsExactly(expensiveRedProduct, expensiveBlueProduct);
     }
 
     @Test
     void should_include_products_between_10_and_100() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct, cheapBlueProduct));
 
         List<Product> filteredProducts = productService.filterProducts(null, 10.0, 100.0);
 
         Assertions.assertThat(filteredProducts).hasSize(2);
-        Assertions.assertThat(filteredProducts.get(0)).isEqualTo(cheapBlueProduct);
-        Assertions.assertThat(filteredProducts.get(1)).isEqualTo(expensiveRedProduct);
+        Assertions.assertThat(filteredProducts.get(0)).isEqualTo(expensiveRedProduct);
+        Assertions.assertThat(filteredProducts.get(1)).isEqualTo(cheapBlueProduct);
+    }
+
+    @Test
+    void should_filter_from_memory_after_catalog_is_loaded() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(expensiveRedProduct, expensiveBlueProduct, cheapBlueProduct));
+
+        productService.filterProducts(null, 0.0, Double.MAX_VALUE);
+        List<Product> page = productService.filterProducts(new FilterQuery(null, 0.0, Double.MAX_VALUE, 1L, 1, false)).products();
+
+        Assertions.assertThat(page).containsExactly(expensiveBlueProduct);
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
     }
 
     @Test
@@ -162,4 +259,308 @@ public class ProductServiceUnitTest {
         Assertions.assertThat(searchResults.get(0)).isEqualTo(expensiveBlueProduct);
         Assertions.assertThat(searchResults.get(1)).isEqualTo(cheapBlueProduct);
     }
+
+    @Test
+    void should_correct_misspelled_query_only_in_fuzzy_search() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        List<Product> exactResults = productService.searchProducts(new SearchQuery("expnsive prodct", null, null, false, false)).products();
+        List<Product> fuzzyResults = productService.searchProducts(new SearchQuery("expnsive prodct", null, null, true, false)).products();
+
+        Assertions.assertThat(exactResults).isEmpty();
+        // "expensive" is only in description of expensive blue product, "product" is in every name
+        Assertions.assertThat(fuzzyResults).containsExactly(expensiveBlueProduct, expensiveRedProduct, cheapBlueProduct);
+    }
+
+    @Test
+    void should_serve_previous_catalog_while_refreshing() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productRepository.findAll())
+                .thenReturn(List.of(expensiveRedProduct))
+                .thenAnswer(invocation -> {
+                    reading.countDown();
+                    release.await();
+                    return List.of(expensiveRedProduct, cheapBlueProduct);
+                });
+        productService.refreshCatalog();
+
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> refresh = refresher.submit(productService::refreshCatalog);
+            reading.await();
+
+            // refresh is stuck reading the database, readers still get the whole previous catalog
+            Assertions.assertThat(productService.getCategories()).containsExactly("Expensive");
+            Assertions.assertThat(productService.searchProducts("product")).containsExactly(expensiveRedProduct);
+            Assertions.assertThat(productService.getProductById(3L)).isNull();
+
+            release.countDown();
+            refresh.get();
+            Assertions.assertThat(productService.getCategories()).containsExactly("Expensive", "Cheap");
+            Assertions.assertThat(productService.getProductById(3L)).isEqualTo(cheapBlueProduct);
+        } finally {
+            release.countDown();
+            refresher.shutdownNow();
+        }
+    }
+
+    @Test
+    void should_search_using_index_built_once() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        List<Product> firstResults = productService.searchProducts("Red");
+        List<Product> secondResults = productService.searchProducts("blu");
+
+        Assertions.assertThat(firstResults).containsExactly(expensiveRedProduct);
+        // equal scores keep catalog order, which is id order
+        Assertions.assertThat(secondResults).containsExactly(expensiveBlueProduct, cheapBlueProduct);
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void should_keep_order_and_version_of_same_products_listed_in_another_order() {
+        when(productRepository.findAll())
+                .thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct))
+                .thenReturn(Arrays.asList(expensiveRedProduct, cheapBlueProduct, expensiveBlueProduct));
+        productService.refreshCatalog();
+        CatalogVersion version = productService.getCatalogVersion();
+        List<Product> results = productService.searchProducts("blue product");
+
+        productService.refreshCatalog();
+
+        Assertions.assertThat(productService.getCatalogVersion()).isSameAs(version);
+        Assertions.assertThat(productService.searchProducts("blue product")).containsExactlyElementsOf(results);
+        Assertions.assertThat(productService.getCategories()).containsExactly("Expensive", "Cheap");
+    }
+
+    @Test
+    void should_get_categories_without_reloading_catalog() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        List<String> categories = productService.getCategories();
+
+        Assertions.assertThat(categories).containsExactly("Expensive", "Cheap");
+        Assertions.assertThat(productService.hasCategory("expensive")).isTrue();
+        Assertions.assertThat(productService.hasCategory("free")).isFalse();
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void should_page_search_results_after_cursor() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        List<Product> firstPage = productService.searchProducts(new SearchQuery("expensive blue", null, 1)).products();
+        List<Product> secondPage = productService.searchProducts(new SearchQuery("expensive blue", firstPage.get(0).getId(), 1)).products();
+        List<Product> lastPage = productService.searchProducts(new SearchQuery("expensive blue", secondPage.get(0).getId(), 1)).products();
+
+        Assertions.assertThat(firstPage).containsExactly(expensiveBlueProduct);
+        Assertions.assertThat(secondPage).containsExactly(cheapBlueProduct);
+        Assertions.assertThat(lastPage).isEmpty();
+    }
+
+    @Test
+    void should_return_empty_page_for_unknown_search_cursor() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        Assertions.assertThat(productService.searchProducts(new SearchQuery("blue", 42L, 10)).products()).isEmpty();
+    }
+
+    @Test
+    void should_get_page_of_products_from_catalog() {
+        when(productRepository.findAll()).thenReturn(List.of(cheapBlueProduct, expensiveRedProduct, expensiveBlueProduct));
+
+        List<Product> firstPage = productService.getProducts(null, 2);
+        List<Product> secondPage = productService.getProducts(2L, 2);
+
+        Assertions.assertThat(firstPage).containsExactly(expensiveRedProduct, expensiveBlueProduct);
+        Assertions.assertThat(secondPage).containsExactly(cheapBlueProduct);
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void should_return_best_results_in_same_order_as_full_search() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        List<Product> allResults = productService.searchProducts("expensive product");
+        List<Product> topResults = productService.searchProducts(new SearchQuery("expensive product", null, 2)).products();
+
+        Assertions.assertThat(allResults).hasSize(3);
+        Assertions.assertThat(topResults).containsExactlyElementsOf(allResults.subList(0, 2));
+    }
+
+    @Test
+    void should_count_search_hits_and_misses() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        productService.searchProducts("blu");
+        productService.searchProducts("green");
+
+        Assertions.assertThat(meterRegistry.get("products.search").tag("result", "hit").counter().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.get("products.search").tag("result", "miss").counter().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.get("products.search.results").summary().totalAmount()).isEqualTo(2);
+    }
+
+    private ProductService givenCachingService() {
+        return new ProductService(productRepository, restTemplate, searchExecutor, new ProductMetrics(meterRegistry),
+                new ProductQueryCache(new ConcurrentMapCacheManager(ProductQueryCache.SEARCH_CACHE, ProductQueryCache.FILTER_CACHE)),
+                Runnable::run);
+    }
+
+    @Test
+    void should_answer_repeated_search_with_same_words_from_cache() throws Exception {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+        ProductService cachingService = givenCachingService();
+
+        List<Product> results = cachingService.searchProducts(new SearchQuery("blue expensive", null, 2)).products();
+
+        Assertions.assertThat(cachingService.searchProducts(new SearchQuery("Expensive  BLUE", null, 2)).products()).isSameAs(results);
+        Assertions.assertThat(cachingService.searchProductsAsync(new SearchQuery("expensive blue", null, 2)).get().products()).isSameAs(results);
+        Assertions.assertThat(cachingService.searchProducts(new SearchQuery("blue expensive", null, 1)).products()).isNotSameAs(results);
+        // only searches that weren't cached were scored
+        Assertions.assertThat(meterRegistry.get("products.search.results").summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_not_return_cached_results_after_catalog_changes() {
+        when(productRepository.findAll())
+                .thenReturn(Arrays.asList(cheapBlueProduct, expensiveRedProduct))
+                .thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+        ProductService cachingService = givenCachingService();
+
+        Assertions.assertThat(cachingService.searchProducts("blue")).containsExactly(cheapBlueProduct);
+        Assertions.assertThat(cachingService.filterProducts("expensive", 0.0, 200.0)).containsExactly(expensiveRedProduct);
+        cachingService.refreshCatalog();
+
+        Assertions.assertThat(cachingService.searchProducts("blue")).containsExactly(expensiveBlueProduct, cheapBlueProduct);
+        Assertions.assertThat(cachingService.filterProducts("expensive", 0.0, 200.0)).containsExactly(expensiveRedProduct, expensiveBlueProduct);
+    }
+
+    @Test
+    void should_not_cache_partial_search_result() throws Exception {
+        givenLargeCatalogAndTickingClock(Duration.ofMillis(5));
+        ProductService cachingService = givenCachingService();
+        ReflectionTestUtils.setField(cachingService, "nanoTime", ReflectionTestUtils.getField(productService, "nanoTime"));
+        ReflectionTestUtils.setField(cachingService, "searchTimeout", Duration.ofMillis(5));
+
+        Assertions.assertThat(cachingService.searchProductsAsync(new SearchQuery("red", null, null)).get().partial()).isTrue();
+        Assertions.assertThat(cachingService.searchProducts("red")).hasSize(5000);
+    }
+
+    @Test
+    void should_count_facets_of_all_matching_products() throws Exception {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+        ReflectionTestUtils.setField(productService, "priceBucketBounds", new double[]{50.0});
+
+        SearchResult searchResult = productService.searchProductsAsync(new SearchQuery("blue", null, 1, false, true)).get();
+        FilterResult filterResult = productService.filterProducts(new FilterQuery(null, 0.0, 110.0, null, 1, true));
+
+        Assertions.assertThat(searchResult.products()).hasSize(1);
+        Assertions.assertThat(searchResult.facets().categories()).containsExactly(Map.entry("Expensive", 1), Map.entry("Cheap", 1));
+        Assertions.assertThat(searchResult.facets().prices()).extracting(Facets.PriceBucket::count).containsExactly(1, 1);
+        Assertions.assertThat(filterResult.products()).containsExactly(expensiveRedProduct);
+        Assertions.assertThat(filterResult.facets().categories()).containsExactly(Map.entry("Expensive", 1), Map.entry("Cheap", 1));
+        Assertions.assertThat(productService.filterProducts(new FilterQuery(null, 0.0, 110.0, null, 1, false)).facets()).isNull();
+    }
+
+    @Test
+    void should_return_only_facets_for_zero_limit() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        FilterResult result = productService.filterProducts(new FilterQuery(null, 0.0, 110.0, null, 0, true));
+
+        Assertions.assertThat(result.products()).isEmpty();
+        Assertions.assertThat(result.facets().categories()).containsExactly(Map.entry("Expensive", 1), Map.entry("Cheap", 1));
+    }
+
+    @Test
+    void should_search_asynchronously_with_same_results() throws Exception {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+
+        SearchResult result = productService.searchProductsAsync(new SearchQuery("expensive product", null, 2)).get();
+
+        Assertions.assertThat(result.partial()).isFalse();
+        Assertions.assertThat(result.products()).containsExactlyElementsOf(productService.searchProducts(new SearchQuery("expensive product", null, 2)).products());
+    }
+
+    // catalog where every product matches "red", searched with a clock that moves one millisecond forward on every reading
+    private void givenLargeCatalogAndTickingClock(Duration searchTimeout) {
+        List<Product> catalog = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            catalog.add(new Product(id, "Red Product " + id, "Cheap", "It is red.", 10.0, "http://example.com/red_product.jpg"));
+        }
+        when(productRepository.findAll()).thenReturn(catalog);
+        AtomicLong clock = new AtomicLong();
+        ReflectionTestUtils.setField(productService, "nanoTime", (LongSupplier) () -> clock.getAndAdd(1_000_000));
+        ReflectionTestUtils.setField(productService, "searchTimeout", searchTimeout);
+    }
+
+    @Test
+    void should_return_partial_search_result_after_deadline() throws Exception {
+        givenLargeCatalogAndTickingClock(Duration.ofMillis(5));
+
+        SearchResult result = productService.searchProductsAsync(new SearchQuery("red", null, null)).get();
+
+        // clock is read twice while collecting candidates, deadline is found at the third check of scoring,
+        // after two blocks of 1024 candidates
+        Assertions.assertThat(result.partial()).isTrue();
+        Assertions.assertThat(result.products()).hasSize(2048);
+        Assertions.assertThat(searchExecutor.getPartialCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_search_that_runs_out_of_time_without_results() {
+        when(productRepository.findAll()).thenReturn(Arrays.asList(cheapBlueProduct, expensiveBlueProduct, expensiveRedProduct));
+        ReflectionTestUtils.setField(productService, "searchTimeout", Duration.ZERO);
+
+        Assertions.assertThatThrownBy(() -> productService.searchProductsAsync(new SearchQuery("blue", null, null)).get())
+                .hasCauseInstanceOf(SearchUnavailableException.class);
+        Assertions.assertThat(searchExecutor.getTimedOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_partial_search_when_partial_results_are_disabled() {
+        givenLargeCatalogAndTickingClock(Duration.ofMillis(5));
+        ReflectionTestUtils.setField(productService, "partialSearchResults", false);
+
+        Assertions.assertThatThrownBy(() -> productService.searchProductsAsync(new SearchQuery("red", null, null)).get())
+                .hasCauseInstanceOf(SearchUnavailableException.class);
+    }
+
+    @Test
+    void should_fail_search_that_runs_out_of_time_while_collecting_candidates() {
+        givenLargeCatalogAndTickingClock(Duration.ofMillis(2));
+
+        Assertions.assertThatThrownBy(() -> productService.searchProductsAsync(new SearchQuery("red " + "x".repeat(1000), null, null)).get())
+                .hasCauseInstanceOf(SearchUnavailableException.class);
+        Assertions.assertThat(searchExecutor.getTimedOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_score_in_parallel_same_as_sequentially() throws Exception {
+        List<Product> catalog = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            String description = id % 3 == 0 ? "It is red." : id % 3 == 1 ? "It is a blue product." : "Red, blue or green.";
+            catalog.add(new Product(id, (id % 2 == 0 ? "Red" : "Green") + " Product " + id, "Cheap", description, 10.0, "http://example.com/product.jpg"));
+        }
+        when(productRepository.findAll()).thenReturn(catalog);
+        SearchExecutor parallelExecutor = new SearchExecutor(1, 10, 4);
+        ProductService parallelService = new ProductService(productRepository, restTemplate, parallelExecutor, new ProductMetrics(meterRegistry), new ProductQueryCache(new NoOpCacheManager()), Runnable::run);
+        ReflectionTestUtils.setField(parallelService, "parallelThreshold", 1);
+
+        try {
+            for (String query : List.of("red", "blue product", "green 42")) {
+                List<Product> firstPage = productService.searchProducts(new SearchQuery(query, null, 20)).products();
+                Assertions.assertThat(parallelService.searchProducts(new SearchQuery(query, null, 20)).products()).containsExactlyElementsOf(firstPage);
+                Long cursor = firstPage.get(firstPage.size() - 1).getId();
+                Assertions.assertThat(parallelService.searchProducts(new SearchQuery(query, cursor, 20)).products())
+                        .containsExactlyElementsOf(productService.searchProducts(new SearchQuery(query, cursor, 20)).products());
+                Assertions.assertThat(parallelService.searchProducts(query)).containsExactlyElementsOf(productService.searchProducts(query));
+                Assertions.assertThat(parallelService.searchProductsAsync(new SearchQuery(query, null, 20, false, true)).get().facets())
+                        .isEqualTo(productService.searchProductsAsync(new SearchQuery(query, null, 20, false, true)).get().facets());
+            }
+        } finally {
+            parallelExecutor.destroy();
+        }
+    }
 }
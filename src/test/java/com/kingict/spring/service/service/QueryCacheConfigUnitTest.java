@@ -0,0 +1,48 @@
+package com.kingict.spring.service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.kingict.spring.service.model.Product;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+public class QueryCacheConfigUnitTest {
+
+    private static final Product PRODUCT = new Product(1L, "Red Product", "Cheap", "It is red.", 10.0, "http://example.com/red_product.jpg");
+
+    private Cache<Object, Object> givenCache(long maxProducts) {
+        QueryCacheConfig config = new QueryCacheConfig();
+        ReflectionTestUtils.setField(config, "maxProducts", maxProducts);
+        // evictions run on the calling thread, so they are done once put returns
+        return config.queryCacheBuilder().executor(Runnable::run).build();
+    }
+
+    private static List<Product> products(int count) {
+        return Collections.nCopies(count, PRODUCT);
+    }
+
+    @Test
+    public void should_bound_cache_by_number_of_cached_products() {
+        Cache<Object, Object> cache = givenCache(100);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("page " + i, new FilterResult(products(10), null));
+        }
+
+        Assertions.assertThat(cache.policy().eviction().orElseThrow().weightedSize().orElseThrow()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void should_not_keep_result_larger_than_whole_cache() {
+        Cache<Object, Object> cache = givenCache(100);
+        cache.put("page", new SearchResult(products(10), false));
+
+        cache.put("everything", new SearchResult(products(1000), false));
+
+        Assertions.assertThat(cache.getIfPresent("everything")).isNull();
+        Assertions.assertThat(cache.getIfPresent("page")).isNotNull();
+    }
+}
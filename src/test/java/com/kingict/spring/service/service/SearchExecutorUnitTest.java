@@ -0,0 +1,46 @@
+package com.kingict.spring.service.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+public class SearchExecutorUnitTest {
+
+    private final SearchExecutor searchExecutor = new SearchExecutor(1, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        searchExecutor.destroy();
+    }
+
+    @Test
+    void should_reject_searches_when_queue_is_full() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = searchExecutor.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "running";
+        });
+        started.await();
+        CompletableFuture<String> queued = searchExecutor.submit(() -> "queued");
+
+        CompletableFuture<String> rejected = searchExecutor.submit(() -> "rejected");
+
+        Assertions.assertThat(rejected).isCompletedExceptionally();
+        Assertions.assertThatThrownBy(rejected::get).hasCauseInstanceOf(SearchUnavailableException.class);
+        Assertions.assertThat(searchExecutor.getQueueDepth()).isEqualTo(1);
+        Assertions.assertThat(searchExecutor.getRejectedCount()).isEqualTo(1);
+
+        release.countDown();
+        Assertions.assertThat(running.get()).isEqualTo("running");
+        Assertions.assertThat(queued.get()).isEqualTo("queued");
+    }
+}
@@ -2,6 +2,7 @@ package com.kingict.spring.service.utils;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -20,4 +21,52 @@ class TextUtilsUnitTest {
         List<String> expected = List.of();
         Assertions.assertThat(TextUtils.tokenize(text)).isEqualTo(expected);
     }
+
+    @Test
+    public void should_join_words_split_by_removed_characters() {
+        String text = "Don't stop-me now\tplease\nok_ \u00C9mile";
+        List<String> expected = Arrays.asList("dont", "stopme", "now", "please", "ok", "mile");
+        Assertions.assertThat(TextUtils.tokenize(text)).isEqualTo(expected);
+    }
+
+    @Test
+    public void should_match_regex_based_tokenizer() {
+        List<String> texts = List.of(
+                "Red Nail Polish", "iPhone 13 Pro Max", "  --  ", "a-b c--d", "ALLCAPS lower MiXeD 123abc",
+                "tabs\tand\u000Bvertical\ftabs\r\n", "nbsp\u00A0joins", "*** ***", "x");
+        for (String text : texts) {
+            Assertions.assertThat(TextUtils.tokenize(text)).as(text).isEqualTo(regexTokenize(text));
+        }
+    }
+
+    @Test
+    public void should_emit_tokens_into_sink_and_array() {
+        List<String> sink = new ArrayList<>();
+        int sinkCount = TextUtils.tokenize("Red Nail Polish", sink::add);
+        Assertions.assertThat(sinkCount).isEqualTo(3);
+        Assertions.assertThat(sink).containsExactly("red", "nail", "polish");
+
+        String[] tokens = new String[2];
+        int arrayCount = TextUtils.tokenize("Red Nail Polish", tokens);
+        Assertions.assertThat(arrayCount).isEqualTo(3);
+        Assertions.assertThat(tokens).containsExactly("red", "nail");
+    }
+
+    @Test
+    public void should_tokenize_words_longer_than_reused_buffer() {
+        String longWord = "a".repeat(100) + "B" + "c".repeat(2000);
+        List<String> texts = List.of(longWord + " Short " + longWord, "x-" + longWord, "Short again");
+        for (String text : texts) {
+            Assertions.assertThat(TextUtils.tokenize(text)).as(text).isEqualTo(regexTokenize(text));
+        }
+    }
+
+    // previous implementation, kept here as a reference for compatibility
+    private static List<String> regexTokenize(String text) {
+        String cleanedText = text.replaceAll("[^a-zA-Z0-9\\s]", "").trim().toLowerCase();
+        if (cleanedText.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.asList(cleanedText.split("\\W+"));
+    }
 }